@@ -0,0 +1,130 @@
+package Benchmark;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Model.Account;
+import Model.BatchItemResult;
+import Model.Message;
+import Util.AccountIdIndex;
+import Util.ConnectionUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of inserting messages with and without the account index.
+ *
+ * - lookup* benchmarks check posted_by against the database, the way inserts worked before the index: a
+ * SELECT COUNT(*) ahead of a single insert, or the EXISTING_ACCOUNTS_SQL query ahead of a batch.
+ * - indexed* benchmarks check posted_by with the account index only.
+ * - unknownAccount* benchmarks insert for an account that does not exist, which the foreign key rejects without the
+ * index, and the relaxed index rejects without a round-trip.
+ *
+ * The database is reset and seeded with ACCOUNTS accounts before each run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountIndexBenchmark {
+    private static final int ACCOUNTS = 1000;
+    private static final int BATCH_SIZE = 100;
+    private static final String COUNT_ACCOUNT_SQL = "SELECT COUNT(*) FROM account WHERE account_id = ?;";
+
+    private MessageDAO lookupDAO;
+    private MessageDAO indexedDAO;
+    private MessageDAO relaxedDAO;
+
+    @Setup
+    public void setUp() throws SQLException {
+        ConnectionUtil.resetTestDatabase();
+        AccountDAO accountDAO = new AccountDAO();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountDAO.insertAccount(new Account("benchmark" + i, "password"));
+        }
+        AccountIdIndex relaxedIndex = new AccountIdIndex(false);
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            relaxedIndex.load(connection);
+        }
+        lookupDAO = new MessageDAO(null);
+        indexedDAO = new MessageDAO();
+        relaxedDAO = new MessageDAO(relaxedIndex);
+    }
+
+    @Benchmark
+    public Message lookupInsert() throws SQLException {
+        Message message = randomMessage();
+        if (!accountExists(message.getPosted_by())) {
+            return null;
+        }
+        return lookupDAO.insertMessage(message);
+    }
+
+    @Benchmark
+    public Message indexedInsert() {
+        return indexedDAO.insertMessage(randomMessage());
+    }
+
+    @Benchmark
+    public List<BatchItemResult> lookupBatchInsert() {
+        return lookupDAO.insertMessages(randomBatch());
+    }
+
+    @Benchmark
+    public List<BatchItemResult> indexedBatchInsert() {
+        return indexedDAO.insertMessages(randomBatch());
+    }
+
+    @Benchmark
+    public Message unknownAccountConstraint() {
+        return lookupDAO.insertMessage(new Message(ACCOUNTS + 100, "benchmark message", 1669947792));
+    }
+
+    @Benchmark
+    public Message unknownAccountRelaxedIndex() {
+        return relaxedDAO.insertMessage(new Message(ACCOUNTS + 100, "benchmark message", 1669947792));
+    }
+
+    private static boolean accountExists(int accountId) throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(COUNT_ACCOUNT_SQL)) {
+            preparedStatement.setInt(1, accountId);
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    private static Message randomMessage() {
+        // Account 1 is the seeded test user, the benchmark accounts follow it.
+        int postedBy = ThreadLocalRandom.current().nextInt(1, ACCOUNTS + 2);
+        return new Message(postedBy, "benchmark message", 1669947792);
+    }
+
+    private static List<Message> randomBatch() {
+        List<Message> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(randomMessage());
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,182 @@
+package Benchmark;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Model.Account;
+import Model.Message;
+import Service.AccountService;
+import Service.MessageService;
+import Util.ConnectionUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the DAO and service calls behind the API against the H2 database, seeded with 1k, 100k or 1M messages.
+ *
+ * - The MessageDAO and AccountDAO benchmarks go straight to the database.
+ * - The service* benchmarks go through MessageService and AccountService, and so through their caches and indexes.
+ *
+ * The database is reset and seeded in bulk before each run, with one account per MESSAGES_PER_ACCOUNT messages, so a
+ * user's timeline is the same size at every data size. Inserts grow the table while they are measured, which matters
+ * little next to the seeded rows except at 1k. removeMessage deletes a message inserted just before each call.
+ *
+ * Run with one thread count directly, eg -Dbenchmark.args="DataAccessBenchmark -t 4 -p messages=100000", or at
+ * several thread counts, each writing JSON results, with DataAccessBenchmarkRunner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataAccessBenchmark {
+    private static final int MESSAGES_PER_ACCOUNT = 100;
+    private static final String SEED_ACCOUNTS_SQL = "INSERT INTO account (username, password) "
+            + "SELECT 'benchmark' || X, 'password' FROM SYSTEM_RANGE(1, ?);";
+    private static final String SEED_MESSAGES_SQL = "INSERT INTO message (posted_by, message_text, time_posted_epoch) "
+            + "SELECT MOD(X, ?) + 2, 'benchmark message ' || X, 1669947792 + X FROM SYSTEM_RANGE(1, ?);";
+
+    @Param({"1000", "100000", "1000000"})
+    public int messages;
+
+    private int accounts;
+    private int firstMessageId;
+    private MessageDAO messageDAO;
+    private AccountDAO accountDAO;
+    private MessageService messageService;
+    private AccountService accountService;
+    private final AtomicLong newAccounts = new AtomicLong();
+
+    @Setup
+    public void setUp() throws SQLException {
+        ConnectionUtil.resetTestDatabase();
+        // The seed script leaves account 1 and message 1 behind; the seeded rows follow them.
+        accounts = Math.max(1, messages / MESSAGES_PER_ACCOUNT);
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            try (PreparedStatement seedAccounts = connection.prepareStatement(SEED_ACCOUNTS_SQL)) {
+                seedAccounts.setInt(1, accounts);
+                seedAccounts.executeUpdate();
+            }
+            try (PreparedStatement seedMessages = connection.prepareStatement(SEED_MESSAGES_SQL)) {
+                seedMessages.setInt(1, accounts);
+                seedMessages.setInt(2, messages);
+                seedMessages.executeUpdate();
+            }
+            ConnectionUtil.getAccountIndex().load(connection);
+        }
+        firstMessageId = 2;
+        messageDAO = new MessageDAO();
+        accountDAO = new AccountDAO();
+        messageService = new MessageService(messageDAO);
+        accountService = new AccountService(accountDAO);
+    }
+
+    /**
+     * A message of each thread's own, inserted before each removeMessage call so there is always one to delete.
+     */
+    @State(Scope.Thread)
+    public static class Removable {
+        int messageId;
+
+        @Setup(Level.Invocation)
+        public void insert(DataAccessBenchmark benchmark) {
+            messageId = benchmark.messageDAO.insertMessage(benchmark.randomMessage()).getMessage_id();
+        }
+    }
+
+    @Benchmark
+    public Message insertMessage() {
+        return messageDAO.insertMessage(randomMessage());
+    }
+
+    @Benchmark
+    public Message findMessage() {
+        return messageDAO.findMessage(randomMessageId());
+    }
+
+    @Benchmark
+    public List<Message> findUserMessages() {
+        return messageDAO.findUserMessages(randomAccountId());
+    }
+
+    @Benchmark
+    public List<Message> getAllMessages() {
+        return messageDAO.getAllMessages();
+    }
+
+    @Benchmark
+    public Message updateMessage() {
+        Message message = new Message(randomMessageId(), 0, "updated benchmark message", 0);
+        return messageDAO.updateMessage(message, message);
+    }
+
+    @Benchmark
+    public Message removeMessage(Removable removable) {
+        return messageDAO.removeMessage(removable.messageId);
+    }
+
+    @Benchmark
+    public Account insertAccount() {
+        return accountDAO.insertAccount(new Account("new" + newAccounts.incrementAndGet(), "password"));
+    }
+
+    @Benchmark
+    public Account findAccount() {
+        return accountDAO.findAccount(randomAccount());
+    }
+
+    @Benchmark
+    public Message serviceGetMessage() {
+        return messageService.getMessage(randomMessageId());
+    }
+
+    @Benchmark
+    public List<Message> serviceGetUserMessages() {
+        return messageService.getUserMessages(randomAccountId());
+    }
+
+    @Benchmark
+    public Message serviceAddMessage() {
+        return messageService.addMessage(randomMessage());
+    }
+
+    @Benchmark
+    public Account serviceLogin() {
+        return accountService.SearchAccount(randomAccount());
+    }
+
+    private Message randomMessage() {
+        return new Message(randomAccountId(), "benchmark message", 1669947792);
+    }
+
+    private int randomMessageId() {
+        return firstMessageId + ThreadLocalRandom.current().nextInt(messages);
+    }
+
+    private int randomAccountId() {
+        return 2 + ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    private Account randomAccount() {
+        return new Account("benchmark" + (1 + ThreadLocalRandom.current().nextInt(accounts)), "password");
+    }
+}
@@ -0,0 +1,47 @@
+package Benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Runs DataAccessBenchmark once per thread count, writing each run's results as JSON to
+ * target/jmh/data-access-t{threads}.json, so runs from two commits can be diffed file by file.
+ *
+ * Arguments, all optional: thread counts (eg "1,4,16"), then any JMH options, eg "-p messages=1000 -wi 1 -i 2".
+ * Run with:
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.main=Benchmark.DataAccessBenchmarkRunner -Dbenchmark.args="1,4,16"
+ */
+public class DataAccessBenchmarkRunner {
+    private static final String RESULTS_DIR = "target/jmh";
+
+    public static void main(String[] args) throws Exception {
+        String[] threadCounts = "1,4,16".split(",");
+        String[] jmhArgs = args;
+        if (args.length > 0 && !args[0].startsWith("-")) {
+            threadCounts = args[0].split(",");
+            jmhArgs = Arrays.copyOfRange(args, 1, args.length);
+        }
+        CommandLineOptions parent = new CommandLineOptions(jmhArgs);
+        new File(RESULTS_DIR).mkdirs();
+
+        for (String threadCount : threadCounts) {
+            int threads = Integer.parseInt(threadCount.trim());
+            String result = RESULTS_DIR + "/data-access-t" + threads + ".json";
+            Options options = new OptionsBuilder()
+                    .parent(parent)
+                    .include(DataAccessBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(result)
+                    .build();
+            new Runner(options).run();
+            System.out.println("Results for " + threads + " threads written to " + result);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package Benchmark;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.ExecutionMode;
+
+import io.javalin.Javalin;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the server in PLATFORM and VIRTUAL execution mode under a closed-loop load: each of N connections sends a
+ * request, waits for the response and sends the next, for a fixed time. The default path reads a page of messages,
+ * so every request blocks on JDBC.
+ *
+ * Arguments, all optional: modes (eg "platform,virtual"), connection counts (eg "1000,5000,10000"), seconds per run,
+ * and the request path. VIRTUAL needs a JVM with virtual threads; on an older JVM the server falls back to PLATFORM,
+ * and the run is labelled as such.
+ */
+public class ExecutionModeLoad {
+    private static final int PORT = 8081;
+    private static final int SEEDED_MESSAGES = 1000;
+    private static final int MAX_SAMPLES = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        String[] modes = (args.length > 0 ? args[0] : "platform,virtual").split(",");
+        String[] connectionCounts = (args.length > 1 ? args[1] : "1000,5000,10000").split(",");
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        String path = args.length > 3 ? args[3] : "/messages?after_id=0&limit=20";
+
+        ConnectionUtil.resetTestDatabase();
+        MessageDAO messageDAO = new MessageDAO();
+        for (int i = 0; i < SEEDED_MESSAGES; i++) {
+            messageDAO.insertMessage(new Message(1, "load message " + i, 1669947792 + i));
+        }
+
+        System.out.printf("%-9s %8s %10s %10s %10s %10s %8s%n",
+                "mode", "conns", "req/s", "mean ms", "p50 ms", "p99 ms", "errors");
+        boolean fellBack = false;
+        for (String modeName : modes) {
+            ExecutionMode mode = ExecutionMode.parse(modeName);
+            fellBack |= !mode.isAvailable();
+            for (String connectionCount : connectionCounts) {
+                Javalin app = new SocialMediaController().startAPI(mode);
+                app.start(PORT);
+                try {
+                    Result result = run(Integer.parseInt(connectionCount.trim()), seconds, path);
+                    String label = mode.isAvailable() ? mode.name() : mode.name() + "*";
+                    System.out.printf("%-9s %8s %10.0f %10.2f %10.2f %10.2f %8d%n", label, connectionCount.trim(),
+                            result.requestsPerSecond, result.meanMillis, result.p50Millis, result.p99Millis,
+                            result.errors);
+                } finally {
+                    app.stop();
+                }
+            }
+        }
+        if (fellBack) {
+            System.out.println("* virtual threads are not available on this JVM, so the server ran on platform threads");
+        }
+        System.exit(0);
+    }
+
+    private static Result run(int connections, int seconds, String path) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path))
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long[] samples = new long[MAX_SAMPLES];
+        AtomicInteger sampleCount = new AtomicInteger();
+        LongAdder completed = new LongAdder();
+        LongAdder errors = new LongAdder();
+        CountDownLatch done = new CountDownLatch(connections);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            send(client, request, deadline, samples, sampleCount, completed, errors, done);
+        }
+        done.await();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        long[] latencies = Arrays.copyOf(samples, Math.min(sampleCount.get(), MAX_SAMPLES));
+        Arrays.sort(latencies);
+        Result result = new Result();
+        result.requestsPerSecond = completed.sum() / elapsedSeconds;
+        result.meanMillis = latencies.length == 0 ? 0 : Arrays.stream(latencies).average().orElse(0) / 1e6;
+        result.p50Millis = percentile(latencies, 0.50);
+        result.p99Millis = percentile(latencies, 0.99);
+        result.errors = errors.sum();
+        return result;
+    }
+
+    /**
+     * Send one request, and on its response send the next, until the deadline passes.
+     */
+    private static void send(HttpClient client, HttpRequest request, long deadline, long[] samples,
+            AtomicInteger sampleCount, LongAdder completed, LongAdder errors, CountDownLatch done) {
+        if (System.nanoTime() >= deadline) {
+            done.countDown();
+            return;
+        }
+        long sent = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            if (failure != null || response.statusCode() != 200) {
+                errors.increment();
+            } else {
+                completed.increment();
+                int index = sampleCount.getAndIncrement();
+                if (index < samples.length) {
+                    samples[index] = System.nanoTime() - sent;
+                }
+            }
+            send(client, request, deadline, samples, sampleCount, completed, errors, done);
+        });
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1)] / 1e6;
+    }
+
+    private static class Result {
+        double requestsPerSecond;
+        double meanMillis;
+        double p50Millis;
+        double p99Millis;
+        long errors;
+    }
+}
@@ -0,0 +1,313 @@
+package Benchmark;
+
+import Controller.SocialMediaController;
+import DAO.InMemoryAccountDAO;
+import DAO.MessageRowHandler;
+import DAO.MessageStore;
+import Model.Account;
+import Model.BatchItemResult;
+import Model.Message;
+import Model.MessageChanges;
+
+import io.javalin.Javalin;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures what each SocialMediaController route costs in routing, JSON and framework overhead, with storage stubbed
+ * out. Requests go through Jetty and Javalin in full, but over a LocalConnector instead of a socket, and the message
+ * store is a StubMessageStore that answers from a fixed list of LIST_SIZE messages without keeping any write.
+ *
+ * The list routes return all listSize messages; the single-message routes read, patch or delete message 1 of them.
+ * exampleEndpoint is the cost of a route that does no work, for comparison. Each operation includes building the
+ * raw response, so the numbers are an upper bound on what the handler itself allocates.
+ *
+ * Run with -prof gc to see bytes allocated per operation, or through main, which adds the GC profiler and writes
+ * JSON results to target/jmh/handlers.json:
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.main=Benchmark.HandlerBenchmark -Dbenchmark.args="-p listSize=10"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandlerBenchmark {
+    private static final String RESULT = "target/jmh/handlers.json";
+    private static final String MESSAGE_BODY = "{\"posted_by\":1,\"message_text\":\"benchmark message\",\"time_posted_epoch\":1669947792}";
+    private static final String PATCH_BODY = "{\"message_text\":\"patched benchmark message\"}";
+    private static final String LOGIN_BODY = "{\"username\":\"benchmark\",\"password\":\"password\"}";
+
+    @Param({"10", "1000", "100000"})
+    public int listSize;
+
+    private Javalin app;
+    private LocalConnector connector;
+
+    private ByteBuffer exampleRequest;
+    private ByteBuffer postMessageRequest;
+    private ByteBuffer getAllMessagesRequest;
+    private ByteBuffer getMessageRequest;
+    private ByteBuffer patchMessageRequest;
+    private ByteBuffer deleteMessageRequest;
+    private ByteBuffer getUserMessagesRequest;
+    private ByteBuffer loginRequest;
+
+    public static void main(String[] args) throws Exception {
+        new File(RESULT).getParentFile().mkdirs();
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(HandlerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(RESULT)
+                .build()).run();
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        InMemoryAccountDAO accounts = new InMemoryAccountDAO();
+        accounts.insertAccount(new Account("benchmark", "password"));
+        app = new SocialMediaController(new StubMessageStore(listSize), accounts).startAPI();
+        app.start(0);
+        Server server = app.jettyServer().server();
+        // Once the connector's acceptor is running on the server's pool, requests are run on the thread that sent
+        // them, so the benchmark thread does all the work and the GC profiler, which counts its allocations, sees it.
+        Executor pool = server.getThreadPool();
+        AtomicBoolean inline = new AtomicBoolean();
+        Executor executor = task -> {
+            if (inline.get()) {
+                task.run();
+            } else {
+                pool.execute(task);
+            }
+        };
+        connector = new LocalConnector(server, executor, null, null, -1, new HttpConnectionFactory());
+        server.addConnector(connector);
+        connector.start();
+        inline.set(true);
+
+        exampleRequest = request("GET", "/example-endpoint", null);
+        postMessageRequest = request("POST", "/messages", MESSAGE_BODY);
+        getAllMessagesRequest = request("GET", "/messages", null);
+        getMessageRequest = request("GET", "/messages/1", null);
+        patchMessageRequest = request("PATCH", "/messages/1", PATCH_BODY);
+        deleteMessageRequest = request("DELETE", "/messages/1", null);
+        getUserMessagesRequest = request("GET", "/accounts/1/messages", null);
+        loginRequest = request("POST", "/login", LOGIN_BODY);
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public ByteBuffer exampleEndpoint(Client client) throws Exception {
+        return client.send(exampleRequest);
+    }
+
+    @Benchmark
+    public ByteBuffer postNewMessage(Client client) throws Exception {
+        return client.send(postMessageRequest);
+    }
+
+    @Benchmark
+    public ByteBuffer getAllMessages(Client client) throws Exception {
+        return client.send(getAllMessagesRequest);
+    }
+
+    @Benchmark
+    public ByteBuffer getMessage(Client client) throws Exception {
+        return client.send(getMessageRequest);
+    }
+
+    @Benchmark
+    public ByteBuffer patchMessage(Client client) throws Exception {
+        return client.send(patchMessageRequest);
+    }
+
+    @Benchmark
+    public ByteBuffer deleteMessage(Client client) throws Exception {
+        return client.send(deleteMessageRequest);
+    }
+
+    @Benchmark
+    public ByteBuffer getUserMessages(Client client) throws Exception {
+        return client.send(getUserMessagesRequest);
+    }
+
+    @Benchmark
+    public ByteBuffer login(Client client) throws Exception {
+        return client.send(loginRequest);
+    }
+
+    /**
+     * A kept-alive connection of each benchmark thread's own. Once it is open, its requests are read and handled
+     * straight from addInputAndExecute, on the benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        LocalConnector.LocalEndPoint endPoint;
+
+        @Setup
+        public void connect(HandlerBenchmark benchmark) throws Exception {
+            endPoint = benchmark.connector.connect();
+            endPoint.addInput(benchmark.exampleRequest.duplicate());
+            endPoint.waitForResponse(false, 10, TimeUnit.SECONDS);
+        }
+
+        @TearDown
+        public void close() {
+            endPoint.close();
+        }
+
+        ByteBuffer send(ByteBuffer request) throws Exception {
+            endPoint.addInputAndExecute(request.duplicate());
+            return endPoint.waitForResponse(false, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static ByteBuffer request(String method, String path, String body) {
+        StringBuilder request = new StringBuilder()
+                .append(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+                .append("Host: localhost\r\n");
+        byte[] bodyBytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        if (body != null) {
+            request.append("Content-Type: application/json\r\n")
+                    .append("Content-Length: ").append(bodyBytes.length).append("\r\n");
+        }
+        request.append("\r\n");
+        byte[] head = request.toString().getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(head.length + bodyBytes.length);
+        buffer.put(head).put(bodyBytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * A MessageStore that answers every read from a fixed list of messages, all posted by account 1, and accepts
+     * every write without keeping it, so the payloads stay the same size however many operations run.
+     */
+    static class StubMessageStore implements MessageStore {
+        private final List<Message> messages;
+
+        StubMessageStore(int size) {
+            List<Message> list = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                list.add(new Message(i, 1, "benchmark message " + i, 1669947792L + i));
+            }
+            this.messages = Collections.unmodifiableList(list);
+        }
+
+        @Override
+        public List<Message> getAllMessages() {
+            return messages;
+        }
+
+        @Override
+        public List<Message> getMessagesAfter(int afterId, int limit) {
+            int from = Math.min(Math.max(afterId, 0), messages.size());
+            return messages.subList(from, Math.min(messages.size(), from + limit));
+        }
+
+        @Override
+        public Message insertMessage(Message message) {
+            return new Message(messages.size() + 1, message.getPosted_by(), message.getMessage_text(),
+                    message.getTime_posted_epoch());
+        }
+
+        @Override
+        public List<BatchItemResult> insertMessages(List<Message> batch) {
+            List<BatchItemResult> results = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                results.add(new BatchItemResult(i, BatchItemResult.CREATED, messages.size() + 1 + i));
+            }
+            return results;
+        }
+
+        @Override
+        public Message findMessage(int messageId) {
+            return messageId >= 1 && messageId <= messages.size() ? messages.get(messageId - 1) : null;
+        }
+
+        @Override
+        public Message removeMessage(int messageId) {
+            return findMessage(messageId);
+        }
+
+        @Override
+        public Message updateMessageText(int messageId, String messageText) {
+            Message message = findMessage(messageId);
+            if (message == null) {
+                return null;
+            }
+            return new Message(messageId, message.getPosted_by(), messageText, message.getTime_posted_epoch());
+        }
+
+        @Override
+        public List<Message> findUserMessages(int accountId) {
+            return accountId == 1 ? messages : Collections.emptyList();
+        }
+
+        @Override
+        public List<Message> findUserMessagesAfter(int accountId, int afterId, int limit) {
+            return accountId == 1 ? getMessagesAfter(afterId, limit) : Collections.emptyList();
+        }
+
+        @Override
+        public boolean streamAllMessages(MessageRowHandler handler) throws IOException {
+            for (Message message : messages) {
+                handler.handle(message);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean streamUserMessages(int accountId, MessageRowHandler handler) throws IOException {
+            for (Message message : findUserMessages(accountId)) {
+                handler.handle(message);
+            }
+            return true;
+        }
+
+        @Override
+        public long getChangeVersion() {
+            return 0;
+        }
+
+        @Override
+        public MessageChanges getChangesSince(long sinceVersion, int limit) {
+            return new MessageChanges(new ArrayList<>(), sinceVersion, false);
+        }
+    }
+}
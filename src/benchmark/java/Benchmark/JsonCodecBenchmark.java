@@ -0,0 +1,106 @@
+package Benchmark;
+
+import Model.Message;
+import Util.JsonCodec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON work of a request done the old way, with a new ObjectMapper per request and a String in between,
+ * against the shared JsonCodec readers and writers encoding straight into the output stream.
+ *
+ * Run with -prof gc to see the bytes allocated per operation next to the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonCodecBenchmark {
+    private static final int LIST_SIZE = 100;
+    private static final ObjectReader MESSAGE_READER = JsonCodec.reader(Message.class);
+    private static final ObjectWriter MESSAGE_WRITER = JsonCodec.writer(Message.class);
+    private static final ObjectWriter MESSAGE_LIST_WRITER = JsonCodec.writer(new TypeReference<List<Message>>(){});
+
+    private Message message;
+    private List<Message> messages;
+    private String body;
+    private byte[] bodyBytes;
+    /**
+     * Stands in for the response output stream; reset before every write.
+     */
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp() {
+        message = new Message(1, 1, "test message 1", 1669947792);
+        messages = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            messages.add(new Message(i + 1, 1, "test message " + (i + 1), 1669947792 + i));
+        }
+        body = "{\"posted_by\":1,\"message_text\":\"hello message\",\"time_posted_epoch\":1669947792}";
+        bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        out = new ByteArrayOutputStream(16 * 1024);
+    }
+
+    @Benchmark
+    public Message perRequestMapperRead() throws IOException {
+        return new ObjectMapper().readValue(body, Message.class);
+    }
+
+    @Benchmark
+    public Message codecRead() throws IOException {
+        return MESSAGE_READER.readValue(bodyBytes);
+    }
+
+    @Benchmark
+    public int perRequestMapperWriteMessage() throws IOException {
+        out.reset();
+        // The String is encoded to bytes again when it is written to the response.
+        out.write(new ObjectMapper().writeValueAsString(message).getBytes(StandardCharsets.UTF_8));
+        return out.size();
+    }
+
+    @Benchmark
+    public int codecWriteMessage() throws IOException {
+        out.reset();
+        JsonCodec.write(out, MESSAGE_WRITER, message);
+        return out.size();
+    }
+
+    @Benchmark
+    public int perRequestMapperWriteList() throws IOException {
+        out.reset();
+        out.write(new ObjectMapper().writeValueAsString(messages).getBytes(StandardCharsets.UTF_8));
+        return out.size();
+    }
+
+    @Benchmark
+    public int codecWriteList() throws IOException {
+        out.reset();
+        JsonCodec.write(out, MESSAGE_LIST_WRITER, messages);
+        return out.size();
+    }
+}
@@ -0,0 +1,424 @@
+package Benchmark;
+
+import Controller.SocialMediaController;
+import DAO.AccountStore;
+import DAO.MessageStore;
+import DAO.StorageBackend;
+import Model.Account;
+import Model.BatchItemResult;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.JsonCodec;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.javalin.Javalin;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the API in-process over loopback with a mix of register, login, post, read, patch and delete requests, and
+ * reports the latency of each endpoint from an HdrHistogram.
+ *
+ * - closed mode runs a fixed number of users, each sending its next request when the last one is answered. It finds
+ * the throughput the server can sustain, but a slow response also delays the requests queued behind it, so its
+ * latencies are optimistic.
+ * - open mode sends requests at a constant rate, whether or not earlier ones were answered, and times each from when
+ * it was due to be sent. A stall then shows up in the latency of every request it held back, which avoids
+ * coordinated omission.
+ *
+ * The store of the configured storage engine is seeded with accounts and messages before the server starts. Reads and
+ * patches pick a seeded message with Zipfian popularity, so a few messages take most of the traffic; deletes take the
+ * messages posted during the run, so the popular ones stay. The first warmup seconds are not recorded.
+ *
+ * Arguments are key=value pairs, all optional:
+ * mode=closed|open, users=64 (closed), rate=1000 requests per second (open), seconds=30, warmup=5,
+ * mix=register:2,login:8,post:15,read:60,patch:10,delete:5, zipf=1.0, accounts=1000, messages=10000, port=8081,
+ * out=directory to write each endpoint's percentile distribution to, as {endpoint}.hgrm.
+ */
+public class LoadGenerator {
+    private static final ObjectReader MESSAGE_READER = JsonCodec.reader(Message.class);
+    private static final int SEED_BATCH_SIZE = 1000;
+    /**
+     * The most open-mode requests in flight at once; requests due beyond it are counted as dropped, not sent.
+     */
+    private static final int MAX_IN_FLIGHT = 10000;
+
+    /**
+     * The requests of the workload mix.
+     */
+    enum Operation {
+        REGISTER, LOGIN, POST, READ, PATCH, DELETE
+    }
+
+    private final Map<String, String> options;
+    private final int port;
+    private final EnumMap<Operation, Integer> mix = new EnumMap<>(Operation.class);
+    private final EnumMap<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final EnumMap<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final LongAdder dropped = new LongAdder();
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+
+    private final List<Integer> accountIds = new ArrayList<>();
+    private int[] messageIds;
+    private Zipf popularity;
+    private final ConcurrentLinkedQueue<Integer> postedIds = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger registered = new AtomicInteger();
+    private volatile boolean recording;
+
+    LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.port = intOption("port", 8081);
+        for (String entry : option("mix", "register:2,login:8,post:15,read:60,patch:10,delete:5").split(",")) {
+            String[] weight = entry.split(":");
+            mix.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "");
+        }
+        new LoadGenerator(options).run();
+        System.exit(0);
+    }
+
+    void run() throws Exception {
+        StorageBackend backend = StorageBackend.fromConfig();
+        seed(backend, intOption("accounts", 1000), intOption("messages", 10000));
+        popularity = new Zipf(messageIds.length, Double.parseDouble(option("zipf", "1.0")));
+
+        Javalin app = new SocialMediaController(backend).startAPI();
+        app.start(port);
+        try {
+            long warmupNanos = TimeUnit.SECONDS.toNanos(intOption("warmup", 5));
+            long runNanos = TimeUnit.SECONDS.toNanos(intOption("seconds", 30));
+            String mode = option("mode", "closed");
+            String load;
+            if ("open".equalsIgnoreCase(mode)) {
+                int rate = intOption("rate", 1000);
+                load = "open loop at " + rate + " requests/s";
+                runOpen(rate, warmupNanos, runNanos);
+            } else {
+                int users = intOption("users", 64);
+                load = "closed loop with " + users + " users";
+                runClosed(users, warmupNanos, runNanos);
+            }
+            report(load + " on the " + backend + " backend", runNanos / 1e9);
+        } finally {
+            app.stop();
+        }
+    }
+
+    /**
+     * Seed accounts and messages straight into the stores, before the services cache them.
+     */
+    private void seed(StorageBackend backend, int accounts, int messages) {
+        if (backend != StorageBackend.MEMORY) {
+            ConnectionUtil.resetTestDatabase();
+        }
+        AccountStore accountStore = backend.accountStore();
+        MessageStore messageStore = backend.messageStore();
+        for (int i = 0; i < accounts; i++) {
+            Account account = accountStore.insertAccount(new Account("load" + i, "password"));
+            if (account != null) {
+                accountIds.add(account.getAccount_id());
+            }
+        }
+        List<Integer> ids = new ArrayList<>(messages);
+        List<Message> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < messages; i++) {
+            batch.add(new Message(randomAccountId(), "load message " + i, 1669947792L + i));
+            if (batch.size() == SEED_BATCH_SIZE || i == messages - 1) {
+                for (BatchItemResult result : messageStore.insertMessages(batch)) {
+                    if (result.getMessage_id() != null) {
+                        ids.add(result.getMessage_id());
+                    }
+                }
+                batch.clear();
+            }
+        }
+        // Popularity is by rank; shuffling spreads the popular messages over the table instead of the oldest rows.
+        Collections.shuffle(ids, new Random(42));
+        messageIds = ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Each user sends a request, waits for the response, and sends the next, until the time is up.
+     */
+    private void runClosed(int users, long warmupNanos, long runNanos) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + runNanos;
+        List<Thread> threads = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            Thread thread = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    Operation operation = pickOperation();
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request(operation), HttpResponse.BodyHandlers.ofString());
+                        completed(operation, response, sent, sent >= measureFrom);
+                    } catch (IOException e) {
+                        failed(operation, sent >= measureFrom);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "load-user-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Send a request every 1/rate seconds on one dispatcher thread, and time each from when it was due, so that
+     * requests delayed by a stall in the client or server are charged for the wait.
+     */
+    private void runOpen(int rate, long warmupNanos, long runNanos) throws InterruptedException {
+        double intervalNanos = 1e9 / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + runNanos;
+        AtomicLong inFlight = new AtomicLong();
+        for (long i = 0; ; i++) {
+            long due = start + (long) (i * intervalNanos);
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured = due >= measureFrom;
+            if (inFlight.get() >= MAX_IN_FLIGHT) {
+                if (measured) {
+                    dropped.increment();
+                }
+                continue;
+            }
+            Operation operation = pickOperation();
+            inFlight.incrementAndGet();
+            client.sendAsync(request(operation), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, failure) -> {
+                        if (failure != null) {
+                            failed(operation, measured);
+                        } else {
+                            completed(operation, response, due, measured);
+                        }
+                        inFlight.decrementAndGet();
+                    });
+        }
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private HttpRequest request(Operation operation) {
+        switch (operation) {
+            case REGISTER:
+                return post("/register", "{\"username\":\"loaduser" + registered.incrementAndGet()
+                        + "\",\"password\":\"password\"}");
+            case LOGIN:
+                return post("/login", "{\"username\":\"load" + ThreadLocalRandom.current().nextInt(accountIds.size())
+                        + "\",\"password\":\"password\"}");
+            case POST:
+                return post("/messages", "{\"posted_by\":" + randomAccountId()
+                        + ",\"message_text\":\"load message\",\"time_posted_epoch\":1669947792}");
+            case READ:
+                return builder("/messages/" + popularMessageId()).GET().build();
+            case PATCH:
+                return builder("/messages/" + popularMessageId())
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"patched load message\"}"))
+                        .header("Content-Type", "application/json")
+                        .build();
+            default:
+                // A delete before any post has landed has nothing of its own to remove, and misses instead.
+                Integer posted = postedIds.poll();
+                return builder("/messages/" + (posted != null ? posted : Integer.MAX_VALUE)).DELETE().build();
+        }
+    }
+
+    private HttpRequest post(String path, String body) {
+        return builder(path)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    private HttpRequest.Builder builder(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(60));
+    }
+
+    private void completed(Operation operation, HttpResponse<String> response, long startNanos, boolean measured) {
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        if (operation == Operation.POST && response.statusCode() == 200) {
+            try {
+                postedIds.add(MESSAGE_READER.<Message>readValue(response.body()).getMessage_id());
+            } catch (IOException e) {
+                // The latency still counts; the message just will not be deleted.
+            }
+        }
+        if (!measured) {
+            return;
+        }
+        if (response.statusCode() != 200) {
+            errors.get(operation).increment();
+        } else {
+            histograms.get(operation).recordValue(Math.min(micros, histograms.get(operation).getHighestTrackableValue()));
+        }
+    }
+
+    private void failed(Operation operation, boolean measured) {
+        if (measured) {
+            errors.get(operation).increment();
+        }
+    }
+
+    private void report(String load, double seconds) throws IOException {
+        System.out.println(load + ", " + (long) seconds + " s measured");
+        System.out.printf("%-9s %9s %9s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        Histogram total = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+        long totalErrors = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = histograms.get(operation);
+            total.add(histogram);
+            totalErrors += errors.get(operation).sum();
+            if (mix.getOrDefault(operation, 0) > 0) {
+                printRow(operation.name().toLowerCase(), histogram, errors.get(operation).sum(), seconds);
+                writeDistribution(operation.name().toLowerCase(), histogram);
+            }
+        }
+        printRow("all", total, totalErrors, seconds);
+        if (dropped.sum() > 0) {
+            System.out.println(dropped.sum() + " requests were not sent because " + MAX_IN_FLIGHT
+                    + " were already in flight; the server can not sustain this rate");
+        }
+    }
+
+    private static void printRow(String name, Histogram histogram, long errorCount, double seconds) {
+        System.out.printf("%-9s %9d %9d %10.0f %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getTotalCount(),
+                errorCount, histogram.getTotalCount() / seconds, histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private void writeDistribution(String name, Histogram histogram) throws IOException {
+        String out = options.get("out");
+        if (out == null || out.isEmpty()) {
+            return;
+        }
+        File directory = new File(out);
+        directory.mkdirs();
+        try (PrintStream stream = new PrintStream(new FileOutputStream(new File(directory, name + ".hgrm")))) {
+            // Recorded in microseconds, written in milliseconds.
+            histogram.outputPercentileDistribution(stream, 1000.0);
+        }
+    }
+
+    private Operation pickOperation() {
+        int totalWeight = 0;
+        for (int weight : mix.values()) {
+            totalWeight += weight;
+        }
+        int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        return Operation.READ;
+    }
+
+    private int randomAccountId() {
+        return accountIds.get(ThreadLocalRandom.current().nextInt(accountIds.size()));
+    }
+
+    private int popularMessageId() {
+        return messageIds[popularity.next()];
+    }
+
+    private String option(String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return Integer.parseInt(option(name, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Ranks 0 to n - 1 drawn with probability proportional to 1 / (rank + 1)^exponent, by binary search over the
+     * cumulative distribution.
+     */
+    static class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double exponent) {
+            cumulative = new double[Math.max(1, n)];
+            double sum = 0;
+            for (int rank = 0; rank < cumulative.length; rank++) {
+                sum += 1 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = sum;
+            }
+            for (int rank = 0; rank < cumulative.length; rank++) {
+                cumulative[rank] /= sum;
+            }
+        }
+
+        int next() {
+            double u = ThreadLocalRandom.current().nextDouble();
+            int low = 0;
+            int high = cumulative.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < u) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
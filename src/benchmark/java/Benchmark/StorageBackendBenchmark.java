@@ -0,0 +1,98 @@
+package Benchmark;
+
+import DAO.AccountStore;
+import DAO.MessageStore;
+import DAO.StorageBackend;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the storage backends on the operations behind the API: inserting a message, finding one by message_id,
+ * reading a page of one user's messages, and checking a login.
+ *
+ * Each backend runs in its own fork, over a store seeded with ACCOUNTS accounts and MESSAGES messages. The SQL backend
+ * starts from a reset test database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StorageBackendBenchmark {
+    private static final int ACCOUNTS = 100;
+    private static final int MESSAGES = 10000;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"SQL", "MEMORY"})
+    public String backend;
+
+    private MessageStore messageStore;
+    private AccountStore accountStore;
+    private int firstAccountId;
+    private int firstMessageId;
+
+    @Setup
+    public void setUp() {
+        StorageBackend storageBackend = StorageBackend.parse(backend);
+        if (storageBackend == StorageBackend.SQL) {
+            ConnectionUtil.resetTestDatabase();
+        }
+        messageStore = storageBackend.messageStore();
+        accountStore = storageBackend.accountStore();
+        firstAccountId = accountStore.insertAccount(new Account("benchmark0", "password")).getAccount_id();
+        for (int i = 1; i < ACCOUNTS; i++) {
+            accountStore.insertAccount(new Account("benchmark" + i, "password"));
+        }
+        firstMessageId = messageStore.insertMessage(randomMessage()).getMessage_id();
+        for (int i = 1; i < MESSAGES; i++) {
+            messageStore.insertMessage(randomMessage());
+        }
+    }
+
+    @Benchmark
+    public Message insertMessage() {
+        return messageStore.insertMessage(randomMessage());
+    }
+
+    @Benchmark
+    public Message findMessage() {
+        return messageStore.findMessage(firstMessageId + ThreadLocalRandom.current().nextInt(MESSAGES));
+    }
+
+    @Benchmark
+    public List<Message> userMessagesPage() {
+        return messageStore.findUserMessagesAfter(randomAccountId(), 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Account login() {
+        int account = ThreadLocalRandom.current().nextInt(ACCOUNTS);
+        return accountStore.findAccount(new Account("benchmark" + account, "password"));
+    }
+
+    private Message randomMessage() {
+        return new Message(randomAccountId(), "benchmark message", 1669947792);
+    }
+
+    private int randomAccountId() {
+        return firstAccountId + ThreadLocalRandom.current().nextInt(ACCOUNTS);
+    }
+}
@@ -1,15 +1,48 @@
 package Controller;
 
 import Model.Account;
+import Model.BatchItemResult;
 import Model.Message;
+import Model.MessageChanges;
+import Model.MessagePage;
+import DAO.AccountStore;
+import DAO.MessageRowHandler;
+import DAO.MessageStore;
+import DAO.StorageBackend;
 import Service.AccountService;
+import Service.MessageBroadcaster;
 import Service.MessageService;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import Util.AppConfig;
+import Util.Bulkhead;
+import Util.ConnectionUtil;
+import Util.ExecutionMode;
+import Util.JsonCodec;
+import Util.MessageLog;
+import Util.MessageVersions;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.javalin.Javalin;
+import io.javalin.config.JavalinConfig;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.ServiceUnavailableResponse;
+import io.javalin.http.sse.SseClient;
+import org.eclipse.jetty.server.Server;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 /**
  * TODO: You will need to write your own endpoints and handlers for your controller. The endpoints you will need can be
  * found in readme.md as well as the test cases. You should
@@ -18,28 +51,91 @@ import java.util.List;
 public class SocialMediaController {
     MessageService messageService;
     AccountService accountService;
+    /**
+     * Bulkheads per group of routes, so a burst on one group can not take every server thread from the others:
+     * full-list reads, single-message reads, writes, and registration and login.
+     */
+    private final Bulkhead bulkReads = newBulkhead("bulkReads", 16, 32);
+    private final Bulkhead pointReads = newBulkhead("pointReads", 64, 128);
+    private final Bulkhead writes = newBulkhead("writes", 32, 64);
+    private final Bulkhead auth = newBulkhead("auth", 32, 64);
+    /**
+     * Shared readers and writers of the request and response bodies, built once rather than per request.
+     */
+    private static final ObjectReader ACCOUNT_READER = JsonCodec.reader(Account.class);
+    private static final ObjectReader MESSAGE_READER = JsonCodec.reader(Message.class);
+    private static final ObjectReader MESSAGE_LIST_READER = JsonCodec.reader(new TypeReference<List<Message>>(){});
+    private static final ObjectWriter ACCOUNT_WRITER = JsonCodec.writer(Account.class);
+    private static final ObjectWriter MESSAGE_WRITER = JsonCodec.writer(Message.class);
+    private static final ObjectWriter MESSAGE_LIST_WRITER = JsonCodec.writer(new TypeReference<List<Message>>(){});
+    private static final ObjectWriter MESSAGE_PAGE_WRITER = JsonCodec.writer(MessagePage.class);
+    private static final ObjectWriter MESSAGE_CHANGES_WRITER = JsonCodec.writer(MessageChanges.class);
+    private static final ObjectWriter BATCH_RESULTS_WRITER = JsonCodec.writer(new TypeReference<List<BatchItemResult>>(){});
+    /**
+     * The request attribute holding the future of a response sent through respondLater.
+     */
+    private static final String PENDING_RESPONSE = "pendingResponse";
 
+    /**
+     * Messages and accounts are kept in the storage backend named by socialmedia.storage.engine.
+     */
     public SocialMediaController(){
-        this.messageService = new MessageService();
-        this.accountService = new AccountService();
+        this(StorageBackend.fromConfig());
+    }
+
+    /**
+     * @param storageBackend where messages and accounts are kept.
+     */
+    public SocialMediaController(StorageBackend storageBackend){
+        this(storageBackend.messageStore(), storageBackend.accountStore());
+    }
+
+    /**
+     * @param messageStore where messages are kept, eg a stub for benchmarking the handlers alone.
+     * @param accountStore where accounts are kept.
+     */
+    public SocialMediaController(MessageStore messageStore, AccountStore accountStore){
+        this.messageService = new MessageService(messageStore);
+        this.accountService = new AccountService(accountStore);
     }
 
     /**
      * In order for the test cases to work, you will need to write the endpoints in the startAPI() method, as the test
      * suite must receive a Javalin object from this method.
+     * Requests are handled in the execution mode named by socialmedia.server.executionMode.
      * @return a Javalin app object which defines the behavior of the Javalin controller.
      */
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
+        return startAPI(ExecutionMode.fromConfig());
+    }
+
+    /**
+     * @param executionMode whether requests are handled on platform threads or virtual threads.
+     * @return a Javalin app object which defines the behavior of the Javalin controller.
+     */
+    public Javalin startAPI(ExecutionMode executionMode) {
+        Javalin app = Javalin.create(config -> {
+            config.jsonMapper(new JsonCodec());
+            config.jetty.server(() -> new Server(executionMode.createThreadPool()));
+            configureCompression(config);
+        });
         app.get("example-endpoint", this::exampleHandler);
-        app.post("/register", this::postRegisterHandler);
-        app.post("/login", this::postLoginHandler);
-        app.post("/messages", this::postNewMessageHandler);
-        app.get("/messages", this::getAllMessageHandler);
-        app.get("/messages/{message_id}", this::getMessageHandler);
-        app.delete("/messages/{message_id}", this::deleteMessageHandler);
-        app.patch("/messages/{message_id}", this::patchMessageHandler);
-        app.get("/accounts/{account_id}/messages", this::getUserMessagesHandler);
+        app.post("/register", guarded(auth, this::postRegisterHandler));
+        app.post("/login", guarded(auth, this::postLoginHandler));
+        app.post("/messages", guarded(writes, this::postNewMessageHandler));
+        app.post("/messages/batch", guarded(writes, this::postMessageBatchHandler));
+        app.get("/messages", guarded(bulkReads, this::getAllMessageHandler));
+        // Registered before /messages/{message_id}, which would otherwise take "search" as a message_id.
+        app.get("/messages/search", guarded(bulkReads, this::searchMessagesHandler));
+        app.get("/messages/changes", guarded(bulkReads, this::getMessageChangesHandler));
+        app.before("/messages/stream", this::checkStreamRequest);
+        app.sse("/messages/stream", this::streamEventsHandler);
+        app.get("/messages/{message_id}", guarded(pointReads, this::getMessageHandler));
+        app.delete("/messages/{message_id}", guarded(writes, this::deleteMessageHandler));
+        app.patch("/messages/{message_id}", guarded(writes, this::patchMessageHandler));
+        app.get("/accounts/{account_id}/messages", guarded(bulkReads, this::getUserMessagesHandler));
+        app.get("/metrics", this::getMetricsHandler);
+        app.events(event -> event.serverStopped(messageService::shutdown));
 
         return app;
     }
@@ -59,15 +155,13 @@ public class SocialMediaController {
      * The new account should be persisted to the database.
      * If the registration is not successful, the response status should be 400. (Client error)
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
-     * @throws JsonProcessingException will be thrown if there is an issue converting JSON into an object.
+     * @throws IOException will be thrown if there is an issue converting JSON into an object or writing the response.
      */
-    private void postRegisterHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Account account = mapper.readValue(ctx.body(), Account.class);
+    private void postRegisterHandler(Context ctx) throws IOException {
+        Account account = ACCOUNT_READER.readValue(ctx.bodyAsBytes());
         Account addedAccount = accountService.addAccount(account);
         if(addedAccount != null){
-            ctx.json(mapper.writeValueAsString(addedAccount));
-            ctx.status(200);
+            writeJson(ctx, ACCOUNT_WRITER, addedAccount);
         }else{
             ctx.status(400);
         }
@@ -81,15 +175,13 @@ public class SocialMediaController {
      * account_id. The response status should be 200 OK, which is the default.
      * If the login is not successful, the response status should be 401. (Unauthorized)
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
-     * @throws JsonProcessingException will be thrown if there is an issue converting JSON into an object.
+     * @throws IOException will be thrown if there is an issue converting JSON into an object or writing the response.
      */
-    private void postLoginHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Account account = mapper.readValue(ctx.body(), Account.class);
+    private void postLoginHandler(Context ctx) throws IOException {
+        Account account = ACCOUNT_READER.readValue(ctx.bodyAsBytes());
         Account findAccount = accountService.SearchAccount(account);
         if(findAccount != null){
-            ctx.json(mapper.writeValueAsString(findAccount));
-            ctx.status(200);
+            writeJson(ctx, ACCOUNT_WRITER, findAccount);
         }else{
             ctx.status(401);
         }
@@ -100,16 +192,52 @@ public class SocialMediaController {
      * If successful, the response body should contain a JSON of the message, including its message_id. The 
      * response status should be 200, which is the default. The new message should be persisted to the database.
      * If the creation of the message is not successful, the response status should be 400. (Client error)
+     * When asynchronous ingestion is enabled, the message is queued and the response is sent once its group has 
+     * been committed. If the queue is full, the response status should be 429. (Too many requests)
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
-     * @throws JsonProcessingException will be thrown if there is an issue converting JSON into an object.
+     * @throws IOException will be thrown if there is an issue converting JSON into an object or writing the response.
      */
-    private void postNewMessageHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Message message = mapper.readValue(ctx.body(), Message.class);
+    private void postNewMessageHandler(Context ctx) throws IOException {
+        Message message = MESSAGE_READER.readValue(ctx.bodyAsBytes());
+        if (messageService.isAsyncIngestion()) {
+            CompletableFuture<Message> pending = messageService.submitMessage(message);
+            if (pending == null) {
+                ctx.status(429);
+                return;
+            }
+            respondLater(ctx, pending.thenAccept(addedMessage -> {
+                if (addedMessage != null) {
+                    ctx.json(addedMessage);
+                    ctx.status(200);
+                } else {
+                    ctx.status(400);
+                }
+            }));
+            return;
+        }
         Message addedMessage = messageService.addMessage(message);
         if(addedMessage != null){
-            ctx.json(mapper.writeValueAsString(addedMessage));
-            ctx.status(200);
+            writeJson(ctx, MESSAGE_WRITER, addedMessage);
+        }else{
+            ctx.status(400);
+        }
+    }
+
+    /**
+     * Handler to create a batch of new messages.
+     * The request body should contain a JSON list of messages, none of which contain a message_id. Each message is 
+     * validated with the same rules as POST /messages, and the valid ones are persisted together in one transaction. 
+     * The response body should contain a JSON list with one result per message, in the same order, giving its status 
+     * and, if it was created, its message_id. The response status should be 200, even if some messages were rejected.
+     * If the list is empty or larger than the maximum batch size, the response status should be 400. (Client error)
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     * @throws IOException will be thrown if there is an issue converting JSON into an object or writing the response.
+     */
+    private void postMessageBatchHandler(Context ctx) throws IOException {
+        List<Message> messages = MESSAGE_LIST_READER.readValue(ctx.bodyAsBytes());
+        List<BatchItemResult> results = messageService.addMessages(messages);
+        if(results != null){
+            writeJson(ctx, BATCH_RESULTS_WRITER, results);
         }else{
             ctx.status(400);
         }
@@ -120,12 +248,151 @@ public class SocialMediaController {
      * The response body should contain a JSON representation of a list containing all messages retrieved 
      * from the database. It is expected for the list to simply be empty if there are no messages. The 
      * response status should always be 200, which is the default.
+     * If the after_id or limit query parameters are given, only one page of messages is returned instead: the 
+     * response body is a JSON page with the messages and the next_after_id cursor to pass for the following page. 
+     * If those parameters are not numbers, the response status should be 400. (Client error)
+     * If the stream=true query parameter is given, the full list is written to the response as it is read from 
+     * the database, so memory use stays flat however many messages there are.
+     * The response carries an ETag and Last-Modified validator. If the client sends back a validator that still 
+     * matches, the response status should be 304 (Not modified) with no body, and the database is not read.
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     * @throws IOException will be thrown if a streamed response could not be written.
      */
-    private void getAllMessageHandler(Context ctx) {
+    private void getAllMessageHandler(Context ctx) throws IOException {
+        if (notModified(ctx, messageService.getMessagesVersion())) {
+            return;
+        }
+        if (isStreamRequest(ctx)) {
+            streamMessages(ctx, messageService::streamAllMessages);
+            return;
+        }
+        if (isPageRequest(ctx)) {
+            Integer afterId = intQueryParam(ctx, "after_id", 0);
+            Integer limit = intQueryParam(ctx, "limit", 0);
+            if (afterId == null || limit == null) {
+                ctx.status(400);
+                return;
+            }
+            writeJson(ctx, MESSAGE_PAGE_WRITER, messageService.getMessagesPage(afterId, limit));
+            return;
+        }
         List<Message> messages = messageService.getAllMessages();
-        ctx.json(messages);
-        ctx.status(200);
+        writeJson(ctx, MESSAGE_LIST_WRITER, messages);
+    }
+
+    /**
+     * Handler to search the text of all messages.
+     * The q query parameter holds the search terms. A message must contain every term to match; OR between terms 
+     * separates alternatives, and a term ending in * matches any word starting with it. The limit query parameter 
+     * caps the number of results, MessageService.DEFAULT_PAGE_SIZE by default.
+     * The response body should contain a JSON representation of a list of the matching messages, highest 
+     * message_id first, and the response status should be 200. If q has no terms or limit is not a number, the response 
+     * status should be 400. (Client error)
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     * @throws IOException will be thrown if the response could not be written.
+     */
+    private void searchMessagesHandler(Context ctx) throws IOException {
+        String query = ctx.queryParam("q");
+        Integer limit = intQueryParam(ctx, "limit", 0);
+        if (query == null || query.isBlank() || limit == null) {
+            ctx.status(400);
+            return;
+        }
+        writeJson(ctx, MESSAGE_LIST_WRITER, messageService.searchMessages(query, limit));
+    }
+
+    /**
+     * Handler to get the changes to all messages since a version, for clients that can not hold the live feed open.
+     * The since_version query parameter is the version the client has caught up to, and limit caps the number of 
+     * changes, MessageService.DEFAULT_PAGE_SIZE by default. Each change is "created", "updated" or "deleted", with 
+     * the message as it is now unless it was deleted. A client starts by sending no since_version, which returns 
+     * just the current version, then reads GET /messages, then asks for the changes since that version.
+     * The response body should contain a JSON representation of the changes and the version to ask from next, and 
+     * the response status should be 200. If since_version or limit is not a number, the response status should be 
+     * 400. (Client error) If the changes since since_version are no longer kept, the response status should be 
+     * 410, and the client should start over.
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     * @throws IOException will be thrown if the response could not be written.
+     */
+    private void getMessageChangesHandler(Context ctx) throws IOException {
+        Long sinceVersion = null;
+        String since = ctx.queryParam("since_version");
+        if (since != null && !since.isEmpty()) {
+            try {
+                sinceVersion = Long.parseLong(since);
+            } catch (NumberFormatException e) {
+                ctx.status(400);
+                return;
+            }
+        }
+        Integer limit = intQueryParam(ctx, "limit", 0);
+        if (limit == null) {
+            ctx.status(400);
+            return;
+        }
+        MessageChanges changes = messageService.getChangesSince(sinceVersion, limit);
+        if (changes == null) {
+            ctx.status(410);
+            return;
+        }
+        writeJson(ctx, MESSAGE_CHANGES_WRITER, changes);
+    }
+
+    /**
+     * Turn away a request for the live feed before the event stream is opened, while a status can still be sent.
+     * If account_id is not a number, the response status should be 400. (Client error) If the feed has its maximum
+     * number of subscribers, the response status should be 503. (Service unavailable)
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     */
+    private void checkStreamRequest(Context ctx) {
+        if (intQueryParam(ctx, "account_id", 0) == null) {
+            throw new BadRequestResponse();
+        }
+        if (!messageService.getBroadcaster().hasCapacity()) {
+            ctx.header("Retry-After", "1");
+            throw new ServiceUnavailableResponse();
+        }
+    }
+
+    /**
+     * Handler for the live feed of message changes, as server-sent events, so clients need not poll GET /messages.
+     * Each new, patched and deleted message is sent as an event named "created", "updated" or "deleted", with the 
+     * JSON representation of the message as its data. The account_id query parameter limits the feed to the 
+     * messages of one account. Clients must send "Accept: text/event-stream", as EventSource does.
+     * A client that reconnects with the Last-Event-ID header, or the last_event_id query parameter, is first sent 
+     * the events it missed, or a "reset" event if they are no longer kept, after which it should reload the 
+     * messages. A client that falls too far behind is disconnected.
+     * @param client the event stream to the client.
+     */
+    private void streamEventsHandler(SseClient client) {
+        int accountId = intQueryParam(client.ctx, "account_id", 0);
+        String lastEventId = client.ctx.header("Last-Event-ID");
+        if (lastEventId == null) {
+            lastEventId = client.ctx.queryParam("last_event_id");
+        }
+        client.keepAlive();
+        MessageBroadcaster.Subscription subscription = messageService.subscribe(accountId == 0 ? null : accountId,
+                lastEventId, new MessageBroadcaster.Sink() {
+                    @Override
+                    public void send(MessageBroadcaster.Event event) {
+                        client.sendEvent(event.getType(), event.getData(), event.getId());
+                    }
+
+                    @Override
+                    public void heartbeat() {
+                        client.sendComment("heartbeat");
+                    }
+
+                    @Override
+                    public void close() {
+                        client.close();
+                    }
+                });
+        if (subscription == null) {
+            client.close();
+            return;
+        }
+        client.onClose(subscription::cancel);
     }
 
     /**
@@ -134,14 +401,15 @@ public class SocialMediaController {
      * is expected for the response body to simply be empty if there is no such message. The response status 
      * should always be 200, which is the default.
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     * @throws IOException will be thrown if the response could not be written.
      */
-    private void getMessageHandler(Context ctx) {
+    private void getMessageHandler(Context ctx) throws IOException {
         int messageId = Integer.parseInt(ctx.pathParam("message_id"));
         Message gotMessage = messageService.getMessage(messageId);
+        ctx.status(200);
         if (gotMessage != null) {
-            ctx.json(gotMessage);
+            writeJson(ctx, MESSAGE_WRITER, gotMessage);
         }
-        ctx.status(200);
     }
 
     /**
@@ -153,14 +421,15 @@ public class SocialMediaController {
      * be empty. This is because the DELETE verb is intended to be idempotent, ie, multiple calls to 
      * the DELETE endpoint should respond with the same type of response.
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     * @throws IOException will be thrown if the response could not be written.
      */
-    private void deleteMessageHandler(Context ctx) {
+    private void deleteMessageHandler(Context ctx) throws IOException {
         int messageId = Integer.parseInt(ctx.pathParam("message_id"));
         Message deletedMessage = messageService.deleteMessage(messageId);
+        ctx.status(200);
         if (deletedMessage != null) {
-            ctx.json(deletedMessage);
+            writeJson(ctx, MESSAGE_WRITER, deletedMessage);
         }
-        ctx.status(200);
     }
 
     /**
@@ -171,15 +440,15 @@ public class SocialMediaController {
      * The message existing on the database should have the updated message_text.
      * 
      * If the update of the message is not successful for any reason, the response status should be 400. (Client error)
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     * @throws IOException will be thrown if there is an issue converting JSON into an object or writing the response.
      */
-    private void patchMessageHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
+    private void patchMessageHandler(Context ctx) throws IOException {
         int messageId = Integer.parseInt(ctx.pathParam("message_id"));
-        Message message = mapper.readValue(ctx.body(), Message.class);
-        Message updatedMessage = messageService.patchMessage(messageService.getMessage(messageId), message);
+        Message message = MESSAGE_READER.readValue(ctx.bodyAsBytes());
+        Message updatedMessage = messageService.patchMessage(messageId, message);
         if(updatedMessage != null){
-            ctx.json(mapper.writeValueAsString(updatedMessage));
-            ctx.status(200);
+            writeJson(ctx, MESSAGE_WRITER, updatedMessage);
         }else{
             ctx.status(400);
         }
@@ -190,13 +459,288 @@ public class SocialMediaController {
      * The response body should contain a JSON representation of a list containing all messages posted by a particular user, 
      * which is retrieved from the database. It is expected for the list to simply be empty if there are no messages. The 
      * response status should always be 200, which is the default
+     * The after_id and limit query parameters page through the messages the same way as for GET /messages, and 
+     * stream=true streams the full list the same way. Conditional requests are answered with 304 the same way, 
+     * from a validator that only changes when this user's messages do.
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     * @throws IOException will be thrown if a streamed response could not be written.
      */
-    private void getUserMessagesHandler(Context ctx) {
+    private void getUserMessagesHandler(Context ctx) throws IOException {
         int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+        if (notModified(ctx, messageService.getUserMessagesVersion(accountId))) {
+            return;
+        }
+        if (isStreamRequest(ctx)) {
+            streamMessages(ctx, handler -> messageService.streamUserMessages(accountId, handler));
+            return;
+        }
+        if (isPageRequest(ctx)) {
+            Integer afterId = intQueryParam(ctx, "after_id", 0);
+            Integer limit = intQueryParam(ctx, "limit", 0);
+            if (afterId == null || limit == null) {
+                ctx.status(400);
+                return;
+            }
+            writeJson(ctx, MESSAGE_PAGE_WRITER, messageService.getUserMessagesPage(accountId, afterId, limit));
+            return;
+        }
         List<Message> messages = messageService.getUserMessages(accountId);
-        ctx.json(messages);
+        writeJson(ctx, MESSAGE_LIST_WRITER, messages);
+    }
+
+    /**
+     * Handler to get the live counters of the server's subsystems.
+     * The response body should contain a JSON object with one entry per subsystem, eg the connection pool's
+     * active, idle and waiting counts and its acquire latency. The response status should always be 200.
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     */
+    private void getMetricsHandler(Context ctx) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("connection_pool", ConnectionUtil.getPoolStats());
+        metrics.put("db_call_gate", ConnectionUtil.getCallGate());
+        metrics.put("account_index", ConnectionUtil.getAccountIndex());
+        metrics.put("username_index", accountService.getUsernameIndex());
+        metrics.put("message_batch", messageService.getBatchMeter());
+        metrics.put("message_cache", messageService.getMessageCache());
+        metrics.put("timeline_cache", messageService.getTimelineCache());
+        metrics.put("search_index", messageService.getSearchIndex());
+        metrics.put("message_stream", messageService.getBroadcaster());
+        if (MessageLog.sharedIfOpen() != null) {
+            metrics.put("message_log", MessageLog.sharedIfOpen());
+        }
+        if (messageService.isAsyncIngestion()) {
+            metrics.put("ingestion_queue", messageService.getIngestionQueue());
+        }
+        Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+        for (Bulkhead bulkhead : new Bulkhead[] {bulkReads, pointReads, writes, auth}) {
+            bulkheads.put(bulkhead.getName(), bulkhead);
+        }
+        metrics.put("bulkheads", bulkheads);
+        ctx.json(metrics);
         ctx.status(200);
     }
 
-}
\ No newline at end of file
+    /**
+     * Set the validators of a response built from the given version, and answer a conditional request whose 
+     * validator still matches with 304. If-None-Match takes precedence over If-Modified-Since. The ETag also 
+     * depends on the query string, since that picks the page or format of the body.
+     * Last-Modified has a resolution of one second, so it is only sent once the second of the last write has 
+     * passed; until then a later write in the same second could not be told apart.
+     * @param ctx the context of a GET request.
+     * @param version the version of the data, taken before the data is read.
+     * @return true if a 304 response was set and the handler should stop.
+     */
+    private static boolean notModified(Context ctx, MessageVersions.Version version) {
+        String etag = version.etag(ctx.queryString());
+        ctx.header("ETag", etag);
+        long lastModifiedSeconds = version.getLastModifiedMillis() / 1000;
+        if (lastModifiedSeconds < System.currentTimeMillis() / 1000) {
+            ctx.header("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    ZonedDateTime.ofInstant(Instant.ofEpochSecond(lastModifiedSeconds), ZoneOffset.UTC)));
+        }
+
+        String ifNoneMatch = ctx.header("If-None-Match");
+        if (ifNoneMatch != null) {
+            if (etagMatches(ifNoneMatch, etag)) {
+                ctx.status(304);
+                return true;
+            }
+            return false;
+        }
+        String ifModifiedSince = ctx.header("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            try {
+                long sinceSeconds = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME)
+                        .toEpochSecond();
+                if (lastModifiedSeconds <= sinceSeconds && lastModifiedSeconds < System.currentTimeMillis() / 1000) {
+                    ctx.status(304);
+                    return true;
+                }
+            } catch (DateTimeParseException e) {
+                // An unreadable date is ignored, as if the header were not sent.
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param ifNoneMatch the If-None-Match header: "*" or a comma separated list of ETags.
+     * @param etag the current ETag.
+     * @return true if any of the listed ETags matches the current one, by weak comparison.
+     */
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        String opaqueTag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pick how responses are compressed, from socialmedia.server.compression: "gzip" (the default), "brotli" for 
+     * Brotli and gzip, or "none". The encoding is negotiated per request from Accept-Encoding, and only bodies of 
+     * at least 1500 bytes are compressed. Brotli needs the jvm-brotli library on the classpath, which is not a 
+     * dependency of this project; without it the server falls back to gzip.
+     * @param config the Javalin config being built.
+     */
+    private static void configureCompression(JavalinConfig config) {
+        String compression = AppConfig.getString("server.compression", "gzip");
+        if ("none".equalsIgnoreCase(compression)) {
+            config.compression.none();
+        } else if ("brotli".equalsIgnoreCase(compression) && isBrotliPresent()) {
+            config.compression.brotliAndGzip();
+        } else {
+            config.compression.gzipOnly();
+        }
+    }
+
+    private static boolean isBrotliPresent() {
+        try {
+            Class.forName("com.nixxcode.jvmbrotli.common.BrotliLoader");
+            return true;
+        } catch (ClassNotFoundException e) {
+            System.out.println("jvm-brotli is not on the classpath, compressing with gzip only");
+            return false;
+        }
+    }
+
+    /**
+     * Wrap a handler in a bulkhead. If the bulkhead is full and its queue is full too, or no permit is freed within
+     * its wait time, the response status should be 503 (Service unavailable), with a Retry-After header, and the
+     * handler is not run. A handler that responds later, through respondLater, keeps its permit until the response
+     * is ready.
+     * @param bulkhead the bulkhead of the handler's route group.
+     * @param handler the handler to guard.
+     * @return the guarded handler.
+     */
+    private static Handler guarded(Bulkhead bulkhead, Handler handler) {
+        return ctx -> {
+            if (!bulkhead.tryAcquire()) {
+                ctx.header("Retry-After", "1");
+                ctx.status(503);
+                return;
+            }
+            CompletableFuture<?> pending = null;
+            try {
+                handler.handle(ctx);
+                pending = ctx.attribute(PENDING_RESPONSE);
+            } finally {
+                if (pending == null) {
+                    bulkhead.release();
+                } else {
+                    pending.whenComplete((result, failure) -> bulkhead.release());
+                }
+            }
+        };
+    }
+
+    /**
+     * Send the response once a future completes, rather than when the handler returns.
+     * @param ctx the context of the request.
+     * @param future completes once the handler has set the response.
+     */
+    private static void respondLater(Context ctx, CompletableFuture<?> future) {
+        ctx.attribute(PENDING_RESPONSE, future);
+        ctx.future(() -> future);
+    }
+
+    /**
+     * The bulkhead of a route group is sized by socialmedia.bulkhead.&lt;group&gt;.maxConcurrent and
+     * bulkhead.&lt;group&gt;.maxQueued, and a queued request waits up to bulkhead.&lt;group&gt;.maxWaitMillis.
+     * @param group the name of the route group.
+     * @param maxConcurrent the default number of requests handled at once.
+     * @param maxQueued the default number of requests waiting at once.
+     * @return the bulkhead of the group.
+     */
+    private static Bulkhead newBulkhead(String group, int maxConcurrent, int maxQueued) {
+        return new Bulkhead(group,
+                AppConfig.getInt("bulkhead." + group + ".maxConcurrent", maxConcurrent),
+                AppConfig.getInt("bulkhead." + group + ".maxQueued", maxQueued),
+                AppConfig.getLong("bulkhead." + group + ".maxWaitMillis", 1000));
+    }
+
+    /**
+     * Respond 200 with a JSON body, encoded by a shared writer straight into the response output stream.
+     * @param ctx the context of the request.
+     * @param writer the writer of the value's type.
+     * @param value the value to send.
+     * @throws IOException will be thrown if the response could not be written.
+     */
+    private static void writeJson(Context ctx, ObjectWriter writer, Object value) throws IOException {
+        ctx.status(200);
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        JsonCodec.write(ctx.outputStream(), writer, value);
+    }
+
+    /**
+     * @param ctx the context of a list request.
+     * @return true if the client asked for the whole list to be streamed.
+     */
+    private static boolean isStreamRequest(Context ctx) {
+        return "true".equalsIgnoreCase(ctx.queryParam("stream"));
+    }
+
+    /**
+     * Write a JSON array of messages straight to the response output stream, one message per row read from the
+     * database. If the read fails part way the array is left unterminated, so the client sees a broken body rather
+     * than a silently truncated list.
+     * @param ctx the context of the list request.
+     * @param source streams the messages into the given handler.
+     * @throws IOException will be thrown if the response could not be written.
+     */
+    private void streamMessages(Context ctx, MessageSource source) throws IOException {
+        ctx.status(200);
+        ctx.contentType("application/json");
+        try (JsonGenerator generator = JsonCodec.createGenerator(ctx.outputStream())) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            generator.writeStartArray();
+            if (source.stream(generator::writeObject)) {
+                generator.writeEndArray();
+            }
+        }
+    }
+
+    /**
+     * A streaming read of the MessageService.
+     */
+    @FunctionalInterface
+    private interface MessageSource {
+        boolean stream(MessageRowHandler handler) throws IOException;
+    }
+
+    /**
+     * @param ctx the context of a list request.
+     * @return true if the client asked for a single page rather than the whole list.
+     */
+    private static boolean isPageRequest(Context ctx) {
+        return ctx.queryParam("after_id") != null || ctx.queryParam("limit") != null;
+    }
+
+    /**
+     * @param ctx the context of the request.
+     * @param name the name of the query parameter.
+     * @param defaultValue the value to use when the parameter is missing.
+     * @return the parameter as an Integer, or null if it is present but not a number.
+     */
+    private static Integer intQueryParam(Context ctx, String name, int defaultValue) {
+        String value = ctx.queryParam(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+}
@@ -2,23 +2,41 @@ package DAO;
 
 import Model.Account;
 import Util.ConnectionUtil;
+import Util.UsernameIndex;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+public class AccountDAO implements AccountStore {
+    /**
+     * Every account.
+     */
+    public static final String ALL_ACCOUNTS_SQL = "SELECT * FROM account;";
+    /**
+     * The username and account_id of every account.
+     */
+    public static final String ALL_USERNAMES_SQL = "SELECT account_id, username FROM account;";
+    /**
+     * A new account.
+     */
+    public static final String INSERT_ACCOUNT_SQL = "INSERT INTO account (username, password) VALUES (?, ?);";
+    /**
+     * The account matching a username and password.
+     */
+    public static final String FIND_ACCOUNT_SQL = "SELECT * FROM account WHERE username = ? AND password = ?;";
 
-public class AccountDAO {
     /**
      * Retrieve all accounts from the account table.
      * @return all Accounts.
      */
     public List<Account> getAllAccounts(){
-        Connection connection = ConnectionUtil.getConnection();
         List<Account> accounts = new ArrayList<>();
-        try {
-            String sql = "SELECT * FROM account;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            ResultSet rs = preparedStatement.executeQuery();
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(ALL_ACCOUNTS_SQL);
+                ResultSet rs = preparedStatement.executeQuery()) {
             while(rs.next()){
                 Account account = new Account(rs.getInt("account_id"), rs.getString("username"), rs.getString("password"));
                 accounts.add(account);
@@ -29,6 +47,24 @@ public class AccountDAO {
         return accounts;
     }
 
+    /**
+     * Retrieve the username of every account, without reading the passwords.
+     * @return the account_id of every account, by username.
+     */
+    public Map<String, Integer> getAllUsernames(){
+        Map<String, Integer> usernames = new HashMap<>();
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(ALL_USERNAMES_SQL);
+                ResultSet rs = preparedStatement.executeQuery()) {
+            while(rs.next()){
+                usernames.put(rs.getString("username"), rs.getInt("account_id"));
+            }
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return usernames;
+    }
+
     /**
      * Insert an account into the account table.
      * - The registration will be successful if and only if the username is not blank, 
@@ -45,30 +81,23 @@ public class AccountDAO {
             return null;
         }
 
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT COUNT(*) FROM account WHERE username = ?;";
-            PreparedStatement checkStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
-            checkStatement.setString(1, account.getUsername());
-
-            ResultSet rs = checkStatement.executeQuery();
-            if (rs.next() && rs.getInt(1) > 0) {
-                return null;
-            }
-
-            sql = "INSERT INTO account (username, password) VALUES (?, ?);";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
+        // The UNIQUE constraint on username rejects duplicates in the same statement as the insert, so there is
+        // no separate lookup round-trip and no window for two concurrent registrations of the same name.
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(INSERT_ACCOUNT_SQL, Statement.RETURN_GENERATED_KEYS)) {
             preparedStatement.setString(1, account.getUsername());
             preparedStatement.setString(2, account.getPassword());
-            
+
             preparedStatement.executeUpdate();
-            ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys();
-            if(pkeyResultSet.next()){
-                int generated_account_id = (int) pkeyResultSet.getLong(1);
-                return new Account(generated_account_id, account.getUsername(), account.getPassword());
+            try (ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys()) {
+                if(pkeyResultSet.next()){
+                    int generated_account_id = (int) pkeyResultSet.getLong(1);
+                    ConnectionUtil.getAccountIndex().add(generated_account_id);
+                    return new Account(generated_account_id, account.getUsername(), account.getPassword());
+                }
             }
+        }catch(SQLIntegrityConstraintViolationException e){
+            return null;
         }catch(SQLException e){
             System.out.println(e.getMessage());
         }
@@ -88,24 +117,29 @@ public class AccountDAO {
             return null;
         }
 
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT * FROM account WHERE username = ? AND password = ?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(FIND_ACCOUNT_SQL, Statement.RETURN_GENERATED_KEYS)) {
             preparedStatement.setString(1, account.getUsername());
             preparedStatement.setString(2, account.getPassword());
-            
-            ResultSet rs = preparedStatement.executeQuery();
-            while(rs.next()){
-                Account foundAccount = new Account(rs.getInt("account_id"),
-                        rs.getString("username"),
-                        rs.getString("password"));
-                return foundAccount;
+
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while(rs.next()){
+                    Account foundAccount = new Account(rs.getInt("account_id"),
+                            rs.getString("username"),
+                            rs.getString("password"));
+                    return foundAccount;
+                }
             }
         }catch(SQLException e){
             System.out.println(e.getMessage());
         }
         return null;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the process-wide index of the usernames in the account table, reloaded with the test database.
+     */
+    public UsernameIndex getUsernameIndex(){
+        return ConnectionUtil.getUsernameIndex();
+    }
+}
@@ -0,0 +1,44 @@
+package DAO;
+
+import Model.Account;
+import Util.UsernameIndex;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The AccountStore interface is the storage SPI for accounts: AccountService only talks to a store through it, so the
+ * backend can be swapped at startup. AccountDAO keeps accounts in the account table, and InMemoryAccountDAO in
+ * concurrent maps.
+ *
+ * Every implementation enforces the same rules: the username must not be blank and must not be taken, and the
+ * password must be at least 4 characters long. Failed writes return null rather than throwing.
+ */
+public interface AccountStore {
+    /**
+     * @return all accounts.
+     */
+    List<Account> getAllAccounts();
+
+    /**
+     * @return the account_id of every account, by username.
+     */
+    Map<String, Integer> getAllUsernames();
+
+    /**
+     * @param account an Account without an account_id.
+     * @return the persisted Account with its generated account_id, or null if it was rejected.
+     */
+    Account insertAccount(Account account);
+
+    /**
+     * @param account an Account holding a username and password.
+     * @return the Account with the matching username and password, or null if there is none.
+     */
+    Account findAccount(Account account);
+
+    /**
+     * @return the index of the usernames in this store, shared by every AccountService using it.
+     */
+    UsernameIndex getUsernameIndex();
+}
@@ -0,0 +1,106 @@
+package DAO;
+
+import Model.Account;
+import Util.AppConfig;
+import Util.UsernameIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The InMemoryAccountDAO class keeps accounts in concurrent maps instead of the account table, for the in-memory
+ * storage backend. Nothing is persisted. Usernames are claimed with putIfAbsent, so two concurrent registrations of
+ * the same username can not both succeed, and no operation takes a lock.
+ */
+public class InMemoryAccountDAO implements AccountStore {
+    private final Map<String, Account> byUsername = new ConcurrentHashMap<>();
+    private final Map<Integer, Account> byId = new ConcurrentHashMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final UsernameIndex usernameIndex = new UsernameIndex(AppConfig.getInt("usernameIndex.expectedSize", 1024),
+            AppConfig.getDouble("usernameIndex.falsePositiveRate", 0.01),
+            !"relaxed".equalsIgnoreCase(AppConfig.getString("usernameIndex.consistency", "strict")));
+
+    /**
+     * @return all accounts, in account_id order.
+     */
+    @Override
+    public List<Account> getAllAccounts(){
+        List<Account> accounts = new ArrayList<>(byId.values());
+        accounts.sort((a, b) -> Integer.compare(a.getAccount_id(), b.getAccount_id()));
+        return accounts;
+    }
+
+    /**
+     * @return the account_id of every account, by username.
+     */
+    @Override
+    public Map<String, Integer> getAllUsernames(){
+        Map<String, Integer> usernames = new HashMap<>();
+        for (Account account : byId.values()) {
+            usernames.put(account.getUsername(), account.getAccount_id());
+        }
+        return usernames;
+    }
+
+    /**
+     * The registration will be successful if and only if the username is not blank, the password is at least 4
+     * characters long, and an Account with that username does not already exist. The account_id is only taken once
+     * the username is claimed, so a rejected duplicate does not leave a gap in the ids.
+     */
+    @Override
+    public Account insertAccount(Account account){
+        if (!isValid(account)) {
+            return null;
+        }
+        Account[] claimed = new Account[1];
+        byUsername.computeIfAbsent(account.getUsername(), username -> {
+            claimed[0] = new Account(lastId.incrementAndGet(), username, account.getPassword());
+            return claimed[0];
+        });
+        if (claimed[0] == null) {
+            return null;
+        }
+        byId.put(claimed[0].getAccount_id(), claimed[0]);
+        return claimed[0];
+    }
+
+    /**
+     * The login will be successful if and only if an Account with the username exists and its password matches.
+     */
+    @Override
+    public Account findAccount(Account account){
+        if (!isValid(account)) {
+            return null;
+        }
+        Account found = byUsername.get(account.getUsername());
+        if (found == null || !found.getPassword().equals(account.getPassword())) {
+            return null;
+        }
+        return found;
+    }
+
+    /**
+     * @return the index of the usernames of this store, sized and made strict like the database's.
+     */
+    @Override
+    public UsernameIndex getUsernameIndex(){
+        return usernameIndex;
+    }
+
+    /**
+     * @param accountId an account_id.
+     * @return true if the account exists.
+     */
+    public boolean exists(int accountId){
+        return byId.containsKey(accountId);
+    }
+
+    private static boolean isValid(Account account){
+        return account.getUsername() != null && !account.getUsername().trim().isEmpty()
+                && account.getPassword() != null && account.getPassword().length() >= 4;
+    }
+}
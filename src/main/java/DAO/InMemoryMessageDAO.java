@@ -0,0 +1,229 @@
+package DAO;
+
+import Model.BatchItemResult;
+import Model.Message;
+import Model.MessageChange;
+import Model.MessageChanges;
+import Util.AppConfig;
+import Util.ChangeLog;
+import Util.MessageVersions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The InMemoryMessageDAO class keeps messages in concurrent maps instead of the message table, for the in-memory
+ * storage backend. Nothing is persisted.
+ *
+ * - Messages are kept by message_id in a ConcurrentSkipListMap, so keyset pages and streams read them in order.
+ * - message_ids come from an AtomicInteger.
+ * - Each account's message_ids are kept in a ConcurrentSkipListSet, a secondary index for the per-user reads.
+ *
+ * Every structure is lock-free, so readers and writers never block each other. posted_by is checked against the
+ * InMemoryAccountDAO of the same backend. Changes are recorded in a ChangeLog holding the last
+ * socialmedia.changes.retention of them.
+ */
+public class InMemoryMessageDAO implements MessageStore {
+    private final NavigableMap<Integer, Message> messages = new ConcurrentSkipListMap<>();
+    private final Map<Integer, NavigableSet<Integer>> byAccount = new ConcurrentHashMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final ChangeLog changes = new ChangeLog(AppConfig.getInt("changes.retention", 100000));
+    private final InMemoryAccountDAO accounts;
+
+    /**
+     * @param accounts the accounts that messages may be posted by.
+     */
+    public InMemoryMessageDAO(InMemoryAccountDAO accounts){
+        this.accounts = accounts;
+    }
+
+    /**
+     * @return all messages, in message_id order.
+     */
+    @Override
+    public List<Message> getAllMessages(){
+        return new ArrayList<>(messages.values());
+    }
+
+    /**
+     * Read one keyset page from the tail of the message map.
+     */
+    @Override
+    public List<Message> getMessagesAfter(int afterId, int limit){
+        List<Message> page = new ArrayList<>();
+        for (Message message : messages.tailMap(afterId, false).values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(message);
+        }
+        return page;
+    }
+
+    /**
+     * The creation of the message will be successful if and only if the message_text is not blank, is not over 255
+     * characters, and posted_by refers to a real, existing user.
+     */
+    @Override
+    public Message insertMessage(Message message){
+        if (message == null || !MessageDAO.isValidText(message.getMessage_text())
+                || !accounts.exists(message.getPosted_by())) {
+            return null;
+        }
+        Message added = new Message(lastId.incrementAndGet(), message.getPosted_by(), message.getMessage_text(),
+                message.getTime_posted_epoch());
+        // The secondary index is written first; a reader that finds the id there before the message itself skips it.
+        byAccount.computeIfAbsent(added.getPosted_by(), key -> new ConcurrentSkipListSet<>()).add(added.getMessage_id());
+        messages.put(added.getMessage_id(), added);
+        changes.record(MessageChange.CREATED, added.getMessage_id());
+        MessageVersions.messagesChanged(added.getPosted_by());
+        return added;
+    }
+
+    /**
+     * Each message is validated and inserted on its own; there is no transaction to share.
+     */
+    @Override
+    public List<BatchItemResult> insertMessages(List<Message> batch){
+        List<BatchItemResult> results = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Message message = batch.get(i);
+            if (message == null || !MessageDAO.isValidText(message.getMessage_text())) {
+                results.add(new BatchItemResult(i, BatchItemResult.INVALID_TEXT, null));
+                continue;
+            }
+            Message added = insertMessage(message);
+            if (added == null) {
+                results.add(new BatchItemResult(i, BatchItemResult.UNKNOWN_ACCOUNT, null));
+            } else {
+                results.add(new BatchItemResult(i, BatchItemResult.CREATED, added.getMessage_id()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return the message, or null if there is no such message.
+     */
+    @Override
+    public Message findMessage(int messageId){
+        return messages.get(messageId);
+    }
+
+    /**
+     * The message is removed from the map first, so only one of two concurrent deletes gets it back.
+     */
+    @Override
+    public Message removeMessage(int messageId){
+        Message deleted = messages.remove(messageId);
+        if (deleted != null) {
+            NavigableSet<Integer> ids = byAccount.get(deleted.getPosted_by());
+            if (ids != null) {
+                ids.remove(messageId);
+            }
+            changes.record(MessageChange.DELETED, messageId);
+            MessageVersions.messagesChanged(deleted.getPosted_by());
+        }
+        return deleted;
+    }
+
+    /**
+     * The update of a message should be successful if and only if the message id already exists and the new
+     * message_text is not blank and is not over 255 characters.
+     */
+    @Override
+    public Message updateMessageText(int messageId, String messageText){
+        if (!MessageDAO.isValidText(messageText)) {
+            return null;
+        }
+        Message updated = messages.computeIfPresent(messageId, (id, current) ->
+                new Message(id, current.getPosted_by(), messageText, current.getTime_posted_epoch()));
+        if (updated != null) {
+            changes.record(MessageChange.UPDATED, messageId);
+            MessageVersions.messagesChanged(updated.getPosted_by());
+        }
+        return updated;
+    }
+
+    /**
+     * @return all messages of the account, in message_id order.
+     */
+    @Override
+    public List<Message> findUserMessages(int accountId){
+        return findUserMessagesAfter(accountId, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Read one keyset page of the account's ids from its secondary index, skipping ids whose message is gone.
+     */
+    @Override
+    public List<Message> findUserMessagesAfter(int accountId, int afterId, int limit){
+        List<Message> page = new ArrayList<>();
+        NavigableSet<Integer> ids = byAccount.get(accountId);
+        if (ids == null) {
+            return page;
+        }
+        for (int id : ids.tailSet(afterId, false)) {
+            if (page.size() >= limit) {
+                break;
+            }
+            Message message = messages.get(id);
+            if (message != null) {
+                page.add(message);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Walk the message map in message_id order; the read can not fail part way.
+     */
+    @Override
+    public boolean streamAllMessages(MessageRowHandler handler) throws IOException {
+        for (Message message : messages.values()) {
+            handler.handle(message);
+        }
+        return true;
+    }
+
+    /**
+     * Walk the account's secondary index in message_id order; the read can not fail part way.
+     */
+    @Override
+    public boolean streamUserMessages(int accountId, MessageRowHandler handler) throws IOException {
+        NavigableSet<Integer> ids = byAccount.get(accountId);
+        if (ids != null) {
+            for (int id : ids) {
+                Message message = messages.get(id);
+                if (message != null) {
+                    handler.handle(message);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the version of the newest change in the ChangeLog.
+     */
+    @Override
+    public long getChangeVersion(){
+        return changes.getVersion();
+    }
+
+    /**
+     * Read the ChangeLog, with the current state of each changed message from the message map.
+     */
+    @Override
+    public MessageChanges getChangesSince(long sinceVersion, int limit){
+        return changes.since(sinceVersion, limit, messages::get);
+    }
+}
@@ -0,0 +1,240 @@
+package DAO;
+
+import Model.BatchItemResult;
+import Model.Message;
+import Model.MessageChange;
+import Model.MessageChanges;
+import Util.AccountIdIndex;
+import Util.AppConfig;
+import Util.ChangeLog;
+import Util.ConnectionUtil;
+import Util.MessageLog;
+import Util.MessageVersions;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The LogMessageDAO class keeps messages in a MessageLog instead of the message table, selected with
+ * socialmedia.storage.engine=log. Accounts stay in the database: posted_by is checked with the account index, and in
+ * strict mode a miss is re-checked against the account table, since there is no foreign key to catch it.
+ *
+ * The log is seeded from the message table when the test database is reset. Rows written straight to the table
+ * afterwards, eg by SQL fixtures, are not seen by this DAO, and writes through it only go to the log.
+ *
+ * Changes are recorded in memory, in a ChangeLog shared like the log itself, so a client catching up across a restart
+ * is told its version was lost.
+ */
+public class LogMessageDAO implements MessageStore {
+    /**
+     * Whether an account_id exists.
+     */
+    private static final String ACCOUNT_EXISTS_SQL = "SELECT account_id FROM account WHERE account_id = ?;";
+    /**
+     * Number of messages read from the log at a time by the streaming reads.
+     */
+    private static final int STREAM_CHUNK_SIZE = AppConfig.getInt("stream.fetchSize", 500);
+    /**
+     * The changes made through every LogMessageDAO of the process.
+     */
+    private static final ChangeLog CHANGES = new ChangeLog(AppConfig.getInt("changes.retention", 100000));
+
+    private final MessageLog log;
+    private final AccountIdIndex accountIndex;
+
+    /**
+     * @param log the log to keep messages in.
+     * @param accountIndex the index to check posted_by with, or null to always ask the database.
+     */
+    public LogMessageDAO(MessageLog log, AccountIdIndex accountIndex){
+        this.log = log;
+        this.accountIndex = accountIndex;
+    }
+
+    @Override
+    public List<Message> getAllMessages(){
+        return log.scan(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Message> getMessagesAfter(int afterId, int limit){
+        return log.scan(afterId, limit);
+    }
+
+    @Override
+    public Message insertMessage(Message message){
+        if (message == null || !MessageDAO.isValidText(message.getMessage_text()) || !accountExists(message.getPosted_by())) {
+            return null;
+        }
+        try {
+            Message added = log.append(message);
+            CHANGES.record(MessageChange.CREATED, added.getMessage_id());
+            MessageVersions.messagesChanged(added.getPosted_by());
+            return added;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public List<BatchItemResult> insertMessages(List<Message> messages){
+        List<BatchItemResult> results = new ArrayList<>(messages.size());
+        List<Message> valid = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            if (message == null || !MessageDAO.isValidText(message.getMessage_text())) {
+                results.add(new BatchItemResult(i, BatchItemResult.INVALID_TEXT, null));
+            } else if (!accountExists(message.getPosted_by())) {
+                results.add(new BatchItemResult(i, BatchItemResult.UNKNOWN_ACCOUNT, null));
+            } else {
+                results.add(null);
+                valid.add(message);
+                validIndexes.add(i);
+            }
+        }
+        if (valid.isEmpty()) {
+            return results;
+        }
+        try {
+            List<Message> added = log.appendAll(valid);
+            for (int k = 0; k < added.size(); k++) {
+                int i = validIndexes.get(k);
+                results.set(i, new BatchItemResult(i, BatchItemResult.CREATED, added.get(k).getMessage_id()));
+                CHANGES.record(MessageChange.CREATED, added.get(k).getMessage_id());
+                MessageVersions.messagesChanged(added.get(k).getPosted_by());
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            for (int i : validIndexes) {
+                results.set(i, new BatchItemResult(i, BatchItemResult.FAILED, null));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public Message findMessage(int messageId){
+        return log.get(messageId);
+    }
+
+    @Override
+    public Message removeMessage(int messageId){
+        try {
+            Message deleted = log.delete(messageId);
+            if (deleted != null) {
+                CHANGES.record(MessageChange.DELETED, messageId);
+                MessageVersions.messagesChanged(deleted.getPosted_by());
+            }
+            return deleted;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public Message updateMessageText(int messageId, String messageText){
+        if (!MessageDAO.isValidText(messageText)) {
+            return null;
+        }
+        try {
+            Message updated = log.update(messageId, messageText);
+            if (updated != null) {
+                CHANGES.record(MessageChange.UPDATED, messageId);
+                MessageVersions.messagesChanged(updated.getPosted_by());
+            }
+            return updated;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public List<Message> findUserMessages(int accountId){
+        return log.scanAccount(accountId, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Message> findUserMessagesAfter(int accountId, int afterId, int limit){
+        return log.scanAccount(accountId, afterId, limit);
+    }
+
+    /**
+     * Read the log STREAM_CHUNK_SIZE messages at a time, so memory use does not grow with the number of messages.
+     */
+    @Override
+    public boolean streamAllMessages(MessageRowHandler handler) throws IOException {
+        int afterId = 0;
+        List<Message> chunk;
+        do {
+            chunk = log.scan(afterId, STREAM_CHUNK_SIZE);
+            for (Message message : chunk) {
+                handler.handle(message);
+                afterId = message.getMessage_id();
+            }
+        } while (chunk.size() == STREAM_CHUNK_SIZE);
+        return true;
+    }
+
+    @Override
+    public boolean streamUserMessages(int accountId, MessageRowHandler handler) throws IOException {
+        int afterId = 0;
+        List<Message> chunk;
+        do {
+            chunk = log.scanAccount(accountId, afterId, STREAM_CHUNK_SIZE);
+            for (Message message : chunk) {
+                handler.handle(message);
+                afterId = message.getMessage_id();
+            }
+        } while (chunk.size() == STREAM_CHUNK_SIZE);
+        return true;
+    }
+
+    @Override
+    public long getChangeVersion(){
+        return CHANGES.getVersion();
+    }
+
+    @Override
+    public MessageChanges getChangesSince(long sinceVersion, int limit){
+        return CHANGES.since(sinceVersion, limit, log::get);
+    }
+
+    /**
+     * @param accountId a posted_by.
+     * @return true if the account exists, by the account index, or by the account table on a miss in strict mode.
+     */
+    private boolean accountExists(int accountId){
+        if (accountIndex != null) {
+            if (accountIndex.contains(accountId)) {
+                return true;
+            }
+            if (!accountIndex.isStrict()) {
+                return false;
+            }
+        }
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(ACCOUNT_EXISTS_SQL)) {
+            preparedStatement.setInt(1, accountId);
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                if (rs.next()) {
+                    if (accountIndex != null) {
+                        accountIndex.add(accountId);
+                    }
+                    return true;
+                }
+            }
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return false;
+    }
+}
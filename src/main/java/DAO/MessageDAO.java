@@ -1,24 +1,140 @@
 package DAO;
 
+import Model.BatchItemResult;
 import Model.Message;
+import Model.MessageChange;
+import Model.MessageChanges;
+import Util.AccountIdIndex;
+import Util.AppConfig;
 import Util.ConnectionUtil;
+import Util.MessageVersions;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MessageDAO implements MessageStore {
+    /**
+     * Every message.
+     */
+    public static final String ALL_MESSAGES_SQL = "SELECT * FROM Message;";
+    /**
+     * One keyset page of all messages.
+     */
+    public static final String MESSAGES_AFTER_SQL = "SELECT * FROM Message WHERE message_id > ? ORDER BY message_id LIMIT ?;";
+    /**
+     * A new message.
+     */
+    public static final String INSERT_MESSAGE_SQL = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);";
+    /**
+     * Which of a set of account_ids exist, given as an array parameter.
+     */
+    public static final String EXISTING_ACCOUNTS_SQL = "SELECT account_id FROM account WHERE account_id = ANY(?);";
+    /**
+     * One message by its message_id.
+     */
+    public static final String FIND_MESSAGE_SQL = "SELECT * FROM Message WHERE message_id = ? LIMIT 1;";
+    /**
+     * Delete one message by its message_id and return the deleted row, using H2's OLD TABLE delta table.
+     */
+    public static final String DELETE_MESSAGE_SQL = "SELECT * FROM OLD TABLE (DELETE FROM Message WHERE message_id = ?);";
+    /**
+     * Replace the text of one message and return the updated row, using H2's FINAL TABLE delta table.
+     */
+    public static final String UPDATE_MESSAGE_SQL = "SELECT * FROM FINAL TABLE (UPDATE Message SET message_text = ? WHERE message_id = ?);";
+    /**
+     * Every message of one user.
+     */
+    public static final String USER_MESSAGES_SQL = "SELECT * FROM Message WHERE posted_by = ?;";
+    /**
+     * One keyset page of the messages of one user.
+     */
+    public static final String USER_MESSAGES_AFTER_SQL = "SELECT * FROM Message WHERE posted_by = ? AND message_id > ? ORDER BY message_id LIMIT ?;";
+    /**
+     * Every message, in message_id order, for streaming.
+     */
+    public static final String STREAM_ALL_MESSAGES_SQL = "SELECT * FROM Message ORDER BY message_id;";
+    /**
+     * Every message of one user, in message_id order, for streaming.
+     */
+    public static final String STREAM_USER_MESSAGES_SQL = "SELECT * FROM Message WHERE posted_by = ? ORDER BY message_id;";
+    /**
+     * One entry of the change log.
+     */
+    public static final String INSERT_CHANGE_SQL = "INSERT INTO message_change (message_id, change_type, changed_at) VALUES (?, ?, ?);";
+    /**
+     * The oldest and newest versions in the change log.
+     */
+    public static final String CHANGE_RANGE_SQL = "SELECT MIN(version), MAX(version) FROM message_change;";
+    /**
+     * The changes after a version, with the current state of each changed message.
+     */
+    public static final String CHANGES_SINCE_SQL = "SELECT c.version, c.message_id, c.change_type, c.changed_at, m.posted_by, m.message_text, m.time_posted_epoch "
+            + "FROM message_change c LEFT JOIN Message m ON m.message_id = c.message_id WHERE c.version > ? ORDER BY c.version LIMIT ?;";
+    /**
+     * Drop the changes more than a number of versions behind the newest.
+     */
+    public static final String PRUNE_CHANGES_SQL = "DELETE FROM message_change WHERE version <= (SELECT MAX(version) FROM message_change) - ?;";
+
+    /**
+     * Number of rows fetched at a time by the streaming reads.
+     */
+    private static final int STREAM_FETCH_SIZE = AppConfig.getInt("stream.fetchSize", 500);
+
+    /**
+     * change_type codes of the message_change table, by position.
+     */
+    private static final String[] CHANGE_TYPES = {null, MessageChange.CREATED, MessageChange.UPDATED, MessageChange.DELETED};
+    /**
+     * Number of changes kept in the change log.
+     */
+    private static final int CHANGE_RETENTION = AppConfig.getInt("changes.retention", 100000);
+    /**
+     * The change log is pruned once every this many changes.
+     */
+    private static final int CHANGE_PRUNE_INTERVAL = 1024;
+    /**
+     * How long a hole in the change versions is waited on before it is taken for a rolled back write.
+     */
+    private static final long CHANGE_GAP_GRACE_MILLIS = AppConfig.getLong("changes.gapGraceMillis", 2000);
+    /**
+     * Changes recorded by every MessageDAO of the process, to know when to prune.
+     */
+    private static final AtomicLong changesRecorded = new AtomicLong();
+
+    /**
+     * Index used to check posted_by without a round-trip to the database, or null to always ask the database.
+     */
+    private final AccountIdIndex accountIndex;
+
+    /**
+     * no-args constructor for a MessageDAO that checks posted_by with the shared account index.
+     */
+    public MessageDAO(){
+        this(ConnectionUtil.getAccountIndex());
+    }
+
+    /**
+     * @param accountIndex the index to check posted_by with, or null to always ask the database.
+     */
+    public MessageDAO(AccountIdIndex accountIndex){
+        this.accountIndex = accountIndex;
+    }
 
-public class MessageDAO {
     /**
      * Retrieve all messages from the message table.
      * @return all messages.
      */
     public List<Message> getAllMessages(){
-        Connection connection = ConnectionUtil.getConnection();
         List<Message> messages = new ArrayList<>();
-        try {
-            String sql = "SELECT * FROM Message;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            ResultSet rs = preparedStatement.executeQuery();
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(ALL_MESSAGES_SQL);
+                ResultSet rs = preparedStatement.executeQuery()) {
             while(rs.next()){
                 Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch"));
                 messages.add(message);
@@ -29,6 +145,33 @@ public class MessageDAO {
         return messages;
     }
 
+    /**
+     * Retrieve one page of messages from the message table, in message_id order.
+     * Keyset pagination: the page starts right after afterId, so the primary key index is seeked straight to the
+     * start of the page and each page costs the same however deep it is.
+     * @param afterId only messages with a greater message_id are returned, 0 to start from the beginning.
+     * @param limit the maximum number of messages to return.
+     * @return up to limit messages with message_id greater than afterId.
+     */
+    public List<Message> getMessagesAfter(int afterId, int limit){
+        List<Message> messages = new ArrayList<>();
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(MESSAGES_AFTER_SQL)) {
+            preparedStatement.setInt(1, afterId);
+            preparedStatement.setInt(2, limit);
+
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while(rs.next()){
+                    Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                    messages.add(message);
+                }
+            }
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return messages;
+    }
+
     /**
      * Insert an message into the message table.
      * The creation of the message will be successful if and only if the message_text is not blank, 
@@ -40,39 +183,160 @@ public class MessageDAO {
         if (message == null) {
             return null;
         }
-        if (message.getMessage_text() == null || message.getMessage_text().trim().isEmpty()|| message.getMessage_text().length() > 255) {
+        if (!isValidText(message.getMessage_text())) {
+            return null;
+        }
+        if (accountIndex != null && !accountIndex.contains(message.getPosted_by()) && !accountIndex.isStrict()) {
             return null;
         }
 
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT COUNT(*) FROM account WHERE account_id = ?;";
-            PreparedStatement checkStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        // In strict mode an index miss is re-checked by attempting the insert itself.
+        // The foreign key on posted_by rejects unknown accounts in the same statement as the insert, so there is
+        // no separate lookup round-trip and no window for the account to disappear in between.
+        // The change log entry is written in the same transaction, so it exists if and only if the message does.
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(INSERT_MESSAGE_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            preparedStatement.setInt(1, message.getPosted_by());
+            preparedStatement.setString(2, message.getMessage_text());
+            preparedStatement.setLong(3, message.getTime_posted_epoch());
 
-            checkStatement.setInt(1, message.getPosted_by());
+            connection.setAutoCommit(false);
+            try {
+                preparedStatement.executeUpdate();
+                try (ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys()) {
+                    if(pkeyResultSet.next()){
+                        int generated_Message_id = (int) pkeyResultSet.getLong(1);
+                        recordChanges(connection, MessageChange.CREATED, List.of(generated_Message_id));
+                        connection.commit();
+                        if (accountIndex != null) {
+                            accountIndex.add(message.getPosted_by());
+                        }
+                        MessageVersions.messagesChanged(message.getPosted_by());
+                        pruneChanges(connection, 1);
+                        return new Message(generated_Message_id, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+                    }
+                }
+                connection.rollback();
+            } catch(SQLException e){
+                connection.rollback();
+                throw e;
+            }
+        }catch(SQLIntegrityConstraintViolationException e){
+            return null;
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
 
-            ResultSet rs = checkStatement.executeQuery();
-            if (rs.next() && rs.getInt(1) == 0) {
-                return null;
+    /**
+     * Insert a batch of messages into the message table, in one transaction.
+     * Each message is validated with the same rules as insertMessage: the message_text must not be blank or over 
+     * 255 characters, and posted_by must refer to a real, existing user. The posted_by ids are checked with the 
+     * account index, and any it does not know are checked with a single query. The valid messages are then written 
+     * with one JDBC batch and committed together. If the write fails, the whole batch is rolled back and every valid message is reported as failed.
+     * @param messages the messages to insert.
+     * @return one result per message, in the same order, with the generated message_id of each created message.
+     */
+    public List<BatchItemResult> insertMessages(List<Message> messages){
+        List<BatchItemResult> results = new ArrayList<>(messages.size());
+        Set<Integer> postedBy = new LinkedHashSet<>();
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            if (message == null || !isValidText(message.getMessage_text())) {
+                results.add(new BatchItemResult(i, BatchItemResult.INVALID_TEXT, null));
+            } else {
+                results.add(null);
+                postedBy.add(message.getPosted_by());
+            }
+        }
+        if (postedBy.isEmpty()) {
+            return results;
+        }
+
+        Set<Integer> existing = new LinkedHashSet<>();
+        Set<Integer> unindexed = new LinkedHashSet<>();
+        for (int accountId : postedBy) {
+            if (accountIndex != null && accountIndex.contains(accountId)) {
+                existing.add(accountId);
+            } else {
+                unindexed.add(accountId);
             }
+        }
+        if (accountIndex != null && !accountIndex.isStrict()) {
+            unindexed.clear();
+        }
 
-            sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            // Only the accounts the index could not vouch for are looked up.
+            if (!unindexed.isEmpty()) {
+                try (PreparedStatement checkStatement = connection.prepareStatement(EXISTING_ACCOUNTS_SQL)) {
+                    checkStatement.setArray(1, connection.createArrayOf("INTEGER", unindexed.toArray()));
+                    try (ResultSet rs = checkStatement.executeQuery()) {
+                        while(rs.next()){
+                            existing.add(rs.getInt(1));
+                            if (accountIndex != null) {
+                                accountIndex.add(rs.getInt(1));
+                            }
+                        }
+                    }
+                }
+            }
 
-            preparedStatement.setInt(1, message.getPosted_by());
-            preparedStatement.setString(2, message.getMessage_text());
-            preparedStatement.setLong(3, message.getTime_posted_epoch());
+            List<Integer> batchIndexes = new ArrayList<>();
+            for (int i = 0; i < messages.size(); i++) {
+                if (results.get(i) == null && !existing.contains(messages.get(i).getPosted_by())) {
+                    results.set(i, new BatchItemResult(i, BatchItemResult.UNKNOWN_ACCOUNT, null));
+                } else if (results.get(i) == null) {
+                    batchIndexes.add(i);
+                }
+            }
+            if (batchIndexes.isEmpty()) {
+                return results;
+            }
 
-            preparedStatement.executeUpdate();
-            ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys();
-            if(pkeyResultSet.next()){
-                int generated_Message_id = (int) pkeyResultSet.getLong(1);
-                return new Message(generated_Message_id, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+            connection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_MESSAGE_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (int i : batchIndexes) {
+                    Message message = messages.get(i);
+                    preparedStatement.setInt(1, message.getPosted_by());
+                    preparedStatement.setString(2, message.getMessage_text());
+                    preparedStatement.setLong(3, message.getTime_posted_epoch());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+
+                List<Integer> generatedIds = new ArrayList<>(batchIndexes.size());
+                try (ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys()) {
+                    while(pkeyResultSet.next()){
+                        generatedIds.add((int) pkeyResultSet.getLong(1));
+                    }
+                }
+                if (generatedIds.size() != batchIndexes.size()) {
+                    throw new SQLException("Expected " + batchIndexes.size() + " generated keys but got " + generatedIds.size());
+                }
+                recordChanges(connection, MessageChange.CREATED, generatedIds);
+                connection.commit();
+                for (int k = 0; k < batchIndexes.size(); k++) {
+                    int i = batchIndexes.get(k);
+                    results.set(i, new BatchItemResult(i, BatchItemResult.CREATED, generatedIds.get(k)));
+                    MessageVersions.messagesChanged(messages.get(i).getPosted_by());
+                }
+            } catch(SQLException e){
+                connection.rollback();
+                throw e;
             }
+            pruneChanges(connection, batchIndexes.size());
         }catch(SQLException e){
             System.out.println(e.getMessage());
         }
-        return null;
+
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) == null) {
+                results.set(i, new BatchItemResult(i, BatchItemResult.FAILED, null));
+            }
+        }
+        return results;
     }
 
     /**
@@ -80,17 +344,15 @@ public class MessageDAO {
      * @return the identified message.
      */
     public Message findMessage(int messageId){
-        Connection connection = ConnectionUtil.getConnection();
         Message returnMessage = null;
-        try {
-            String sql = "SELECT * FROM Message WHERE message_id = ? LIMIT 1;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(FIND_MESSAGE_SQL, Statement.RETURN_GENERATED_KEYS)) {
             preparedStatement.setInt(1, messageId);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            while(rs.next()){
-                returnMessage = new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while(rs.next()){
+                    returnMessage = new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                }
             }
         }catch(SQLException e){
             System.out.println(e.getMessage());
@@ -100,68 +362,88 @@ public class MessageDAO {
 
     /**
      * Delete a message from the message table based on its message_id.
+     * The row is deleted and returned by a single statement, so there is no window between reading the message
+     * and deleting it. The deletion is recorded in the change log in the same transaction.
      * @return the deleted message.
      */
     public Message removeMessage(int messageId){
-        Connection connection = ConnectionUtil.getConnection();
         Message returnMessage = null;
-        try {
-            String sql = "SELECT * FROM Message WHERE message_id = ? LIMIT 1;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(DELETE_MESSAGE_SQL)) {
             preparedStatement.setInt(1, messageId);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            while(rs.next()){
-                returnMessage = new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+            connection.setAutoCommit(false);
+            try {
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while(rs.next()){
+                        returnMessage = new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                    }
+                }
+                if (returnMessage != null) {
+                    recordChanges(connection, MessageChange.DELETED, List.of(messageId));
+                }
+                connection.commit();
+            } catch(SQLException e){
+                connection.rollback();
+                throw e;
             }
-
             if (returnMessage != null) {
-                sql = "DELETE FROM Message WHERE message_id = ?;";
-                preparedStatement = connection.prepareStatement(sql);
-
-                preparedStatement.setInt(1, messageId);
-
-                preparedStatement.executeUpdate();
+                pruneChanges(connection, 1);
             }
-
         }catch(SQLException e){
             System.out.println(e.getMessage());
+            returnMessage = null;
+        }
+        if (returnMessage != null) {
+            MessageVersions.messagesChanged(returnMessage.getPosted_by());
         }
         return returnMessage;
     }
 
     /**
-     * Update a message from the message table based on its message_id.
+     * Update the text of a message from the message table based on its message_id.
      * The update of a message should be successful if and only if the message id already exists and the new 
-     * message_text is not blank and is not over 255 characters. 
-     * @return the updated message.
+     * message_text is not blank and is not over 255 characters. The row is updated and returned by a single 
+     * statement, so there is no separate existence check or read-back. The update is recorded in the change log 
+     * in the same transaction.
+     * @param messageId the message_id of the message to update.
+     * @param messageText the new message_text.
+     * @return the updated message, or null if there is no such message or the text is invalid.
      */
-    public Message updateMessage(Message updatedMessage, Message newMessage){
-        Connection connection = ConnectionUtil.getConnection();
+    public Message updateMessageText(int messageId, String messageText){
         Message returnMessage = null;
-        if (updatedMessage == null || newMessage == null) {
+        if (!isValidText(messageText)) {
             return returnMessage;
         }
-        else if (newMessage.getMessage_text() == null) {
-            return returnMessage;
-        }
-        else if (newMessage.getMessage_text().length() > 255 || 
-                newMessage.getMessage_text().trim().isEmpty()) {
-            return returnMessage;
-        }
-        try {
-            String sql = "UPDATE Message SET message_text = ? WHERE message_id = ? LIMIT 1;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
-            preparedStatement.setString(1, newMessage.getMessage_text());
-            preparedStatement.setInt(2, updatedMessage.getMessage_id());
-
-            preparedStatement.executeUpdate();
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_MESSAGE_SQL)) {
+            preparedStatement.setString(1, messageText);
+            preparedStatement.setInt(2, messageId);
 
-            returnMessage = this.findMessage(updatedMessage.getMessage_id());
+            connection.setAutoCommit(false);
+            try {
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while(rs.next()){
+                        returnMessage = new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                    }
+                }
+                if (returnMessage != null) {
+                    recordChanges(connection, MessageChange.UPDATED, List.of(messageId));
+                }
+                connection.commit();
+            } catch(SQLException e){
+                connection.rollback();
+                throw e;
+            }
+            if (returnMessage != null) {
+                pruneChanges(connection, 1);
+            }
         }catch(SQLException e){
             System.out.println(e.getMessage());
+            returnMessage = null;
+        }
+        if (returnMessage != null) {
+            MessageVersions.messagesChanged(returnMessage.getPosted_by());
         }
         return returnMessage;
     }
@@ -171,18 +453,43 @@ public class MessageDAO {
      * @return all messages from a particular user.
      */
     public List<Message> findUserMessages(int accountId){
-        Connection connection = ConnectionUtil.getConnection();
         List<Message> messages = new ArrayList<>();
-        try {
-            String sql = "SELECT * FROM Message WHERE posted_by = ?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(USER_MESSAGES_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            preparedStatement.setInt(1, accountId);
 
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while(rs.next()){
+                    Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                    messages.add(message);
+                }
+            }
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return messages;
+    }
+
+    /**
+     * Retrieve one page of the messages posted by a particular user, in message_id order.
+     * @param accountId the posted_by/account_id of the messages.
+     * @param afterId only messages with a greater message_id are returned, 0 to start from the beginning.
+     * @param limit the maximum number of messages to return.
+     * @return up to limit messages from the user with message_id greater than afterId.
+     */
+    public List<Message> findUserMessagesAfter(int accountId, int afterId, int limit){
+        List<Message> messages = new ArrayList<>();
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(USER_MESSAGES_AFTER_SQL)) {
             preparedStatement.setInt(1, accountId);
+            preparedStatement.setInt(2, afterId);
+            preparedStatement.setInt(3, limit);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            while(rs.next()){
-                Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch"));
-                messages.add(message);
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while(rs.next()){
+                    Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                    messages.add(message);
+                }
             }
         }catch(SQLException e){
             System.out.println(e.getMessage());
@@ -190,4 +497,180 @@ public class MessageDAO {
         return messages;
     }
 
-}
\ No newline at end of file
+    /**
+     * Read every message from the message table and hand each one to the handler as its row is read, in
+     * message_id order. Nothing is collected, so memory use does not grow with the number of messages.
+     * @param handler receives each message.
+     * @return true if every message was read, false if the query failed part way.
+     * @throws IOException if the handler failed, eg because the client went away.
+     */
+    public boolean streamAllMessages(MessageRowHandler handler) throws IOException {
+        return streamMessages(STREAM_ALL_MESSAGES_SQL, null, handler);
+    }
+
+    /**
+     * Read every message posted by a particular user and hand each one to the handler as its row is read, in
+     * message_id order.
+     * @param accountId the posted_by/account_id of the messages.
+     * @param handler receives each message.
+     * @return true if every message was read, false if the query failed part way.
+     * @throws IOException if the handler failed, eg because the client went away.
+     */
+    public boolean streamUserMessages(int accountId, MessageRowHandler handler) throws IOException {
+        return streamMessages(STREAM_USER_MESSAGES_SQL, accountId, handler);
+    }
+
+    /**
+     * Retrieve the newest version of the change log.
+     * @return the newest version, or 0 if nothing has been changed.
+     */
+    public long getChangeVersion(){
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(CHANGE_RANGE_SQL);
+                ResultSet rs = preparedStatement.executeQuery()) {
+            if (rs.next()) {
+                return rs.getLong(2);
+            }
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Retrieve the changes after a version from the change log, joined with the current state of each message.
+     * Versions are taken when a write inserts its change, but writes commit in any order, so a version can be
+     * missing for a moment while a later one is already visible. Reading stops at such a hole, unless it is older 
+     * than CHANGE_GAP_GRACE_MILLIS, when it is taken for a rolled back write and skipped. A created or updated 
+     * message that is gone by now is left out, since its deletion follows.
+     * @param sinceVersion the version the client has caught up to.
+     * @param limit the maximum number of changes to return.
+     * @return up to limit changes after sinceVersion, or null if older changes were pruned, sinceVersion is newer 
+     * than any change, or the change log could not be read.
+     */
+    public MessageChanges getChangesSince(long sinceVersion, int limit){
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            long oldest;
+            long newest;
+            try (PreparedStatement rangeStatement = connection.prepareStatement(CHANGE_RANGE_SQL);
+                    ResultSet rs = rangeStatement.executeQuery()) {
+                rs.next();
+                oldest = rs.getLong(1);
+                newest = rs.getLong(2);
+            }
+            if (sinceVersion < 0 || sinceVersion > newest || (oldest > 0 && sinceVersion < oldest - 1)) {
+                return null;
+            }
+
+            List<MessageChange> changes = new ArrayList<>();
+            long version = sinceVersion;
+            long settledMillis = System.currentTimeMillis() - CHANGE_GAP_GRACE_MILLIS;
+            try (PreparedStatement preparedStatement = connection.prepareStatement(CHANGES_SINCE_SQL)) {
+                preparedStatement.setLong(1, sinceVersion);
+                preparedStatement.setInt(2, limit);
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while(rs.next()){
+                        long changeVersion = rs.getLong("version");
+                        if (changeVersion != version + 1 && rs.getLong("changed_at") > settledMillis) {
+                            break;
+                        }
+                        version = changeVersion;
+                        String type = CHANGE_TYPES[rs.getInt("change_type")];
+                        int messageId = rs.getInt("message_id");
+                        Message message = null;
+                        if (!MessageChange.DELETED.equals(type)) {
+                            if (rs.getObject("posted_by") == null) {
+                                continue;
+                            }
+                            message = new Message(messageId, rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                        }
+                        changes.add(new MessageChange(changeVersion, type, messageId, message));
+                    }
+                }
+            }
+            return new MessageChanges(changes, version, version < newest);
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Add entries to the change log, in the caller's transaction.
+     */
+    private static void recordChanges(Connection connection, String type, List<Integer> messageIds) throws SQLException {
+        long now = System.currentTimeMillis();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_CHANGE_SQL)) {
+            for (int messageId : messageIds) {
+                preparedStatement.setInt(1, messageId);
+                preparedStatement.setInt(2, Arrays.asList(CHANGE_TYPES).indexOf(type));
+                preparedStatement.setLong(3, now);
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        }
+    }
+
+    /**
+     * Drop the changes more than CHANGE_RETENTION versions old, once every CHANGE_PRUNE_INTERVAL changes. A failed
+     * prune is left for the next one.
+     * @param recorded the number of changes just committed.
+     */
+    private static void pruneChanges(Connection connection, int recorded) {
+        long before = changesRecorded.getAndAdd(recorded);
+        if (before / CHANGE_PRUNE_INTERVAL == (before + recorded) / CHANGE_PRUNE_INTERVAL) {
+            return;
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(PRUNE_CHANGES_SQL)) {
+            preparedStatement.setLong(1, CHANGE_RETENTION);
+            preparedStatement.executeUpdate();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Run a message query on a forward-only cursor. H2 normally buffers the full result of a query before
+     * returning the first row; lazy query execution is switched on for the duration of the query so rows are
+     * produced as the cursor advances, STREAM_FETCH_SIZE at a time.
+     */
+    private boolean streamMessages(String sql, Integer accountId, MessageRowHandler handler) throws IOException {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            try (Statement lazy = connection.createStatement()) {
+                lazy.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setFetchSize(STREAM_FETCH_SIZE);
+                if (accountId != null) {
+                    preparedStatement.setInt(1, accountId);
+                }
+
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while(rs.next()){
+                        handler.handle(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                    }
+                }
+            } finally {
+                try (Statement eager = connection.createStatement()) {
+                    eager.execute("SET LAZY_QUERY_EXECUTION FALSE");
+                }
+            }
+            return true;
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * @param messageText the message_text of a new or updated message.
+     * @return true if the text is not blank and is not over 255 characters.
+     */
+    static boolean isValidText(String messageText) {
+        return messageText != null && !messageText.trim().isEmpty() && messageText.length() <= 255;
+    }
+
+}
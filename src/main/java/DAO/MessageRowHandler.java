@@ -0,0 +1,18 @@
+package DAO;
+
+import Model.Message;
+
+import java.io.IOException;
+
+/**
+ * Callback for the streaming reads of the MessageDAO. It is handed each message as soon as its row is read from the
+ * ResultSet, so the caller never has to hold the whole list in memory.
+ */
+@FunctionalInterface
+public interface MessageRowHandler {
+    /**
+     * @param message the message read from the current row.
+     * @throws IOException if the message could not be written out, which stops the stream.
+     */
+    void handle(Message message) throws IOException;
+}
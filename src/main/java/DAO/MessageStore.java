@@ -0,0 +1,118 @@
+package DAO;
+
+import Model.BatchItemResult;
+import Model.Message;
+import Model.MessageChanges;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The MessageStore interface is the storage SPI for messages: MessageService only talks to a store through it, so the
+ * backend can be swapped at startup. MessageDAO keeps messages in the message table, LogMessageDAO in a MessageLog,
+ * and InMemoryMessageDAO in concurrent maps.
+ *
+ * Every implementation enforces the same rules: message_text must not be blank or over 255 characters, and posted_by
+ * must refer to an existing account. Failed writes return null rather than throwing. Every write that succeeds is
+ * also recorded in the store's change log, which clients read to catch up without downloading every message.
+ */
+public interface MessageStore {
+    /**
+     * @return all messages.
+     */
+    List<Message> getAllMessages();
+
+    /**
+     * @param afterId only messages with a greater message_id are returned, 0 to start from the beginning.
+     * @param limit the maximum number of messages to return.
+     * @return up to limit messages with message_id greater than afterId, in message_id order.
+     */
+    List<Message> getMessagesAfter(int afterId, int limit);
+
+    /**
+     * @param message a Message without a message_id.
+     * @return the persisted Message with its generated message_id, or null if it was rejected.
+     */
+    Message insertMessage(Message message);
+
+    /**
+     * @param messages the messages to insert, together if the backend supports it.
+     * @return one result per message, in the same order, with the generated message_id of each created message.
+     */
+    List<BatchItemResult> insertMessages(List<Message> messages);
+
+    /**
+     * @param messageId a message_id.
+     * @return the identified message, or null if there is no such message.
+     */
+    Message findMessage(int messageId);
+
+    /**
+     * @param messageId a message_id.
+     * @return the deleted message, or null if there is no such message.
+     */
+    Message removeMessage(int messageId);
+
+    /**
+     * @param updatedMessage the message to update.
+     * @param newMessage a message holding the new message_text.
+     * @return the updated message, or null if there is no such message or the text is invalid.
+     */
+    default Message updateMessage(Message updatedMessage, Message newMessage) {
+        if (updatedMessage == null || newMessage == null) {
+            return null;
+        }
+        return updateMessageText(updatedMessage.getMessage_id(), newMessage.getMessage_text());
+    }
+
+    /**
+     * @param messageId the message_id of the message to update.
+     * @param messageText the new message_text.
+     * @return the updated message, or null if there is no such message or the text is invalid.
+     */
+    Message updateMessageText(int messageId, String messageText);
+
+    /**
+     * @param accountId the posted_by/account_id of the messages.
+     * @return all messages from the user.
+     */
+    List<Message> findUserMessages(int accountId);
+
+    /**
+     * @param accountId the posted_by/account_id of the messages.
+     * @param afterId only messages with a greater message_id are returned, 0 to start from the beginning.
+     * @param limit the maximum number of messages to return.
+     * @return up to limit messages from the user with message_id greater than afterId, in message_id order.
+     */
+    List<Message> findUserMessagesAfter(int accountId, int afterId, int limit);
+
+    /**
+     * Hand every message to the handler in message_id order, without collecting them.
+     * @param handler receives each message.
+     * @return true if every message was read, false if the read failed part way.
+     * @throws IOException if the handler failed, eg because the client went away.
+     */
+    boolean streamAllMessages(MessageRowHandler handler) throws IOException;
+
+    /**
+     * Hand every message of a user to the handler in message_id order, without collecting them.
+     * @param accountId the posted_by/account_id of the messages.
+     * @param handler receives each message.
+     * @return true if every message was read, false if the read failed part way.
+     * @throws IOException if the handler failed, eg because the client went away.
+     */
+    boolean streamUserMessages(int accountId, MessageRowHandler handler) throws IOException;
+
+    /**
+     * @return the version of the newest change in the change log.
+     */
+    long getChangeVersion();
+
+    /**
+     * @param sinceVersion a version handed out by getChangeVersion or by an earlier call.
+     * @param limit the maximum number of changes to return.
+     * @return up to limit changes after sinceVersion, in version order, each with the current state of its message,
+     * or null if the change log no longer holds every change after sinceVersion.
+     */
+    MessageChanges getChangesSince(long sinceVersion, int limit);
+}
@@ -0,0 +1,72 @@
+package DAO;
+
+import Util.AppConfig;
+import Util.ConnectionUtil;
+import Util.MessageLog;
+
+/**
+ * The StorageBackend enum selects where messages and accounts are kept.
+ *
+ * - SQL keeps both in the H2 database, through MessageDAO and AccountDAO.
+ * - LOG keeps messages in the memory-mapped MessageLog shared by the application, and accounts in the database.
+ * - MEMORY keeps both in the lock-free maps of InMemoryMessageDAO and InMemoryAccountDAO, shared by the application.
+ * Nothing survives a restart, and the database is never touched for messages or accounts, which suits edge nodes
+ * and load tests.
+ */
+public enum StorageBackend {
+    SQL,
+    LOG,
+    MEMORY;
+
+    /**
+     * @return the backend named by socialmedia.storage.engine, SQL by default.
+     */
+    public static StorageBackend fromConfig() {
+        return parse(AppConfig.getString("storage.engine", SQL.name()));
+    }
+
+    /**
+     * @param name the name of a backend, in any case.
+     * @return the named backend, or SQL if the name is not a backend.
+     */
+    public static StorageBackend parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Unknown storage backend " + name + ", using " + SQL);
+            return SQL;
+        }
+    }
+
+    /**
+     * @return the message store of this backend.
+     */
+    public MessageStore messageStore() {
+        switch (this) {
+            case LOG:
+                return new LogMessageDAO(MessageLog.shared(), ConnectionUtil.getAccountIndex());
+            case MEMORY:
+                return Memory.MESSAGES;
+            default:
+                return new MessageDAO();
+        }
+    }
+
+    /**
+     * @return the account store of this backend.
+     */
+    public AccountStore accountStore() {
+        if (this == MEMORY) {
+            return Memory.ACCOUNTS;
+        }
+        return new AccountDAO();
+    }
+
+    /**
+     * The stores of the MEMORY backend, created on first use.
+     */
+    private static class Memory {
+        static final InMemoryAccountDAO ACCOUNTS = new InMemoryAccountDAO();
+        static final InMemoryMessageDAO MESSAGES = new InMemoryMessageDAO(ACCOUNTS);
+    }
+}
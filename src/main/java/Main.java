@@ -1,14 +1,23 @@
 import Controller.SocialMediaController;
+import DAO.StorageBackend;
+import Util.ExecutionMode;
 import io.javalin.Javalin;
 
 /**
  * This class is provided with a main method to allow you to manually run and test your application. This class will not
  * affect your program in any way and you may write whatever code you like here.
+ *
+ * The first argument, if given, selects the execution mode: "platform" or "virtual" threads. Otherwise the mode is
+ * read from socialmedia.server.executionMode.
+ * The second argument, if given, selects the storage backend: "sql", "log" or "memory". Otherwise the backend is read
+ * from socialmedia.storage.engine.
  */
 public class Main {
     public static void main(String[] args) {
-        SocialMediaController controller = new SocialMediaController();
-        Javalin app = controller.startAPI();
+        ExecutionMode executionMode = args.length > 0 ? ExecutionMode.parse(args[0]) : ExecutionMode.fromConfig();
+        StorageBackend storageBackend = args.length > 1 ? StorageBackend.parse(args[1]) : StorageBackend.fromConfig();
+        SocialMediaController controller = new SocialMediaController(storageBackend);
+        Javalin app = controller.startAPI(executionMode);
         app.start(8080);
     }
 }
@@ -0,0 +1,118 @@
+package Model;
+
+import java.util.Objects;
+
+/**
+ * This is a class that models the outcome of one message in a batch of new messages.
+ */
+public class BatchItemResult {
+    /**
+     * The message was persisted, and message_id holds its generated id.
+     */
+    public static final String CREATED = "created";
+    /**
+     * The message_text was blank or over 255 characters.
+     */
+    public static final String INVALID_TEXT = "invalid_text";
+    /**
+     * posted_by does not refer to a real, existing user.
+     */
+    public static final String UNKNOWN_ACCOUNT = "unknown_account";
+    /**
+     * The message was valid, but the batch could not be written and was rolled back.
+     */
+    public static final String FAILED = "failed";
+
+    /**
+     * The position of the message in the submitted batch, starting at 0.
+     */
+    public int index;
+    /**
+     * One of CREATED, INVALID_TEXT, UNKNOWN_ACCOUNT or FAILED.
+     */
+    public String status;
+    /**
+     * The id generated for the message if it was created, otherwise null.
+     */
+    public Integer message_id;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public BatchItemResult(){
+    }
+    /**
+     * @param index
+     * @param status
+     * @param message_id
+     */
+    public BatchItemResult(int index, String status, Integer message_id) {
+        this.index = index;
+        this.status = status;
+        this.message_id = message_id;
+    }
+    /**
+     * @return index
+     */
+    public int getIndex() {
+        return index;
+    }
+    /**
+     * @param index
+     */
+    public void setIndex(int index) {
+        this.index = index;
+    }
+    /**
+     * @return status
+     */
+    public String getStatus() {
+        return status;
+    }
+    /**
+     * @param status
+     */
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    /**
+     * @return message_id
+     */
+    public Integer getMessage_id() {
+        return message_id;
+    }
+    /**
+     * @param message_id
+     */
+    public void setMessage_id(Integer message_id) {
+        this.message_id = message_id;
+    }
+    /**
+     * Overriding the default equals() method allows Assert.assertEquals to compare results.
+     * @param o the other object.
+     * @return true if o is equal to this object.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BatchItemResult that = (BatchItemResult) o;
+        return index == that.index && Objects.equals(status, that.status) && Objects.equals(message_id, that.message_id);
+    }
+    @Override
+    public int hashCode() {
+        return Objects.hash(index, status, message_id);
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "BatchItemResult{" +
+                "index=" + index +
+                ", status='" + status + '\'' +
+                ", message_id=" + message_id +
+                '}';
+    }
+}
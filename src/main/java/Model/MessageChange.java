@@ -0,0 +1,134 @@
+package Model;
+
+import java.util.Objects;
+
+/**
+ * This is a class that models one write to the messages, as recorded in the change log.
+ */
+public class MessageChange {
+    /**
+     * A message was posted.
+     */
+    public static final String CREATED = "created";
+    /**
+     * The text of a message was replaced.
+     */
+    public static final String UPDATED = "updated";
+    /**
+     * A message was deleted.
+     */
+    public static final String DELETED = "deleted";
+
+    /**
+     * The version of the change log after this change. Versions increase with every change.
+     */
+    public long version;
+    /**
+     * One of CREATED, UPDATED or DELETED.
+     */
+    public String change_type;
+    /**
+     * The message_id of the changed message.
+     */
+    public int message_id;
+    /**
+     * The message as it is now, or null if it was deleted.
+     */
+    public Message message;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessageChange(){
+    }
+    /**
+     * @param version
+     * @param change_type
+     * @param message_id
+     * @param message
+     */
+    public MessageChange(long version, String change_type, int message_id, Message message) {
+        this.version = version;
+        this.change_type = change_type;
+        this.message_id = message_id;
+        this.message = message;
+    }
+    /**
+     * @return version
+     */
+    public long getVersion() {
+        return version;
+    }
+    /**
+     * @param version
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    /**
+     * @return change_type
+     */
+    public String getChange_type() {
+        return change_type;
+    }
+    /**
+     * @param change_type
+     */
+    public void setChange_type(String change_type) {
+        this.change_type = change_type;
+    }
+    /**
+     * @return message_id
+     */
+    public int getMessage_id() {
+        return message_id;
+    }
+    /**
+     * @param message_id
+     */
+    public void setMessage_id(int message_id) {
+        this.message_id = message_id;
+    }
+    /**
+     * @return message
+     */
+    public Message getMessage() {
+        return message;
+    }
+    /**
+     * @param message
+     */
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+    /**
+     * Overriding the default equals() method allows Assert.assertEquals to compare changes.
+     * @param o the other object.
+     * @return true if o is equal to this object.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MessageChange change = (MessageChange) o;
+        return version == change.version && message_id == change.message_id
+                && Objects.equals(change_type, change.change_type) && Objects.equals(message, change.message);
+    }
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, change_type, message_id, message);
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessageChange{" +
+                "version=" + version +
+                ", change_type='" + change_type + '\'' +
+                ", message_id=" + message_id +
+                ", message=" + message +
+                '}';
+    }
+}
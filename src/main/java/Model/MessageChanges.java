@@ -0,0 +1,104 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This is a class that models the changes to the messages since a version of the change log.
+ */
+public class MessageChanges {
+    /**
+     * The changes, in version order.
+     */
+    public List<MessageChange> changes;
+    /**
+     * The version the client has caught up to: pass it back as since_version to get the changes after these.
+     */
+    public long version;
+    /**
+     * True if there are further changes after version, so the client should ask again straight away.
+     */
+    public boolean has_more;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessageChanges(){
+        this.changes = new ArrayList<>();
+    }
+    /**
+     * @param changes
+     * @param version
+     * @param has_more
+     */
+    public MessageChanges(List<MessageChange> changes, long version, boolean has_more) {
+        this.changes = changes;
+        this.version = version;
+        this.has_more = has_more;
+    }
+    /**
+     * @return changes
+     */
+    public List<MessageChange> getChanges() {
+        return changes;
+    }
+    /**
+     * @param changes
+     */
+    public void setChanges(List<MessageChange> changes) {
+        this.changes = changes;
+    }
+    /**
+     * @return version
+     */
+    public long getVersion() {
+        return version;
+    }
+    /**
+     * @param version
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    /**
+     * @return has_more
+     */
+    public boolean getHas_more() {
+        return has_more;
+    }
+    /**
+     * @param has_more
+     */
+    public void setHas_more(boolean has_more) {
+        this.has_more = has_more;
+    }
+    /**
+     * Overriding the default equals() method allows Assert.assertEquals to compare change sets.
+     * @param o the other object.
+     * @return true if o is equal to this object.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MessageChanges that = (MessageChanges) o;
+        return version == that.version && has_more == that.has_more && Objects.equals(changes, that.changes);
+    }
+    @Override
+    public int hashCode() {
+        return Objects.hash(changes, version, has_more);
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessageChanges{" +
+                "changes=" + changes +
+                ", version=" + version +
+                ", has_more=" + has_more +
+                '}';
+    }
+}
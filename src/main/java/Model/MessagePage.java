@@ -0,0 +1,86 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This is a class that models one page of a keyset-paginated list of messages.
+ */
+public class MessagePage {
+    /**
+     * The messages on this page, in ascending message_id order.
+     */
+    public List<Message> messages;
+    /**
+     * The cursor for the following page: pass it back as after_id to continue. It is the message_id of the last
+     * message on this page, or null when there are no more messages.
+     */
+    public Integer next_after_id;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessagePage(){
+        this.messages = new ArrayList<>();
+    }
+    /**
+     * @param messages
+     * @param next_after_id
+     */
+    public MessagePage(List<Message> messages, Integer next_after_id) {
+        this.messages = messages;
+        this.next_after_id = next_after_id;
+    }
+    /**
+     * @return messages
+     */
+    public List<Message> getMessages() {
+        return messages;
+    }
+    /**
+     * @param messages
+     */
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+    /**
+     * @return next_after_id
+     */
+    public Integer getNext_after_id() {
+        return next_after_id;
+    }
+    /**
+     * @param next_after_id
+     */
+    public void setNext_after_id(Integer next_after_id) {
+        this.next_after_id = next_after_id;
+    }
+    /**
+     * Overriding the default equals() method allows Assert.assertEquals to compare pages.
+     * @param o the other object.
+     * @return true if o is equal to this object.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MessagePage page = (MessagePage) o;
+        return Objects.equals(messages, page.messages) && Objects.equals(next_after_id, page.next_after_id);
+    }
+    @Override
+    public int hashCode() {
+        return Objects.hash(messages, next_after_id);
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessagePage{" +
+                "messages=" + messages +
+                ", next_after_id=" + next_after_id +
+                '}';
+    }
+}
@@ -1,24 +1,33 @@
 package Service;
 
 import Model.Account;
-import DAO.AccountDAO;
+import DAO.AccountStore;
+import DAO.StorageBackend;
+import Util.UsernameIndex;
 
 import java.util.List;
 
 public class AccountService {
-    private AccountDAO accountDAO;
+    private AccountStore accountDAO;
     /**
-     * no-args constructor for creating a new AccountService with a new AccountDAO.
+     * Index of the registered usernames, shared with every other service using the same store.
+     */
+    private final UsernameIndex usernameIndex;
+    /**
+     * no-args constructor for creating a new AccountService with the account store of the storage backend named by
+     * socialmedia.storage.engine.
      */
     public AccountService(){
-        accountDAO = new AccountDAO();
+        this(StorageBackend.fromConfig().accountStore());
     }
     /**
-     * Constructor for a AccountService when a AccountDAO is provided.
-     * @param AccountDAO
+     * Constructor for a AccountService when a AccountStore is provided.
+     * The service uses the store's username index.
+     * @param accountDAO
      */
-    public AccountService(AccountDAO accountDAO){
+    public AccountService(AccountStore accountDAO){
         this.accountDAO = accountDAO;
+        this.usernameIndex = accountDAO.getUsernameIndex();
     }
     /**
      * Use the AccountDAO to retrieve all accounts.
@@ -30,22 +39,51 @@ public class AccountService {
     }
     /**
      * Use the AccountDAO to persist an Account. The given Account will not have an id provided.
+     * A username already in the username index is rejected without touching the database; any other username is
+     * left for the store to check, so a stale index can not accept a duplicate.
      *
      * @param account an Account object.
      * @return The persisted account if the persistence is successful.
      */
     public Account addAccount(Account account) {
-        return accountDAO.insertAccount(account);
+        if (account.getUsername() != null && usernameIndex.contains(account.getUsername())) {
+            return null;
+        }
+        Account addedAccount = accountDAO.insertAccount(account);
+        if (addedAccount != null) {
+            usernameIndex.add(addedAccount.getUsername(), addedAccount.getAccount_id());
+        }
+        return addedAccount;
     }
 
     /**
      * Use the AccountDAO to search for an Account using username and password.
      * The given Account will not have an id provided.
+     * A username missing from the username index is re-checked against the store in strict mode, and added to the
+     * index if it was registered elsewhere; in relaxed mode it is rejected without touching the database.
      *
      * @param account an Account object.
      * @return The found account if the login is successful.
      */
     public Account SearchAccount(Account account) {
-        return accountDAO.findAccount(account);
+        if (account.getUsername() == null) {
+            return null;
+        }
+        boolean indexed = usernameIndex.contains(account.getUsername());
+        if (!indexed && !usernameIndex.isStrict()) {
+            return null;
+        }
+        Account foundAccount = accountDAO.findAccount(account);
+        if (foundAccount != null && !indexed) {
+            usernameIndex.add(foundAccount.getUsername(), foundAccount.getAccount_id());
+        }
+        return foundAccount;
+    }
+
+    /**
+     * @return the username index, whose getters report its size and false positive rate.
+     */
+    public UsernameIndex getUsernameIndex() {
+        return usernameIndex;
     }
 }
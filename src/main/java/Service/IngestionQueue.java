@@ -0,0 +1,192 @@
+package Service;
+
+import DAO.MessageStore;
+import Model.BatchItemResult;
+import Model.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The IngestionQueue class writes new messages behind the request threads, with group commit.
+ *
+ * Request threads put messages on a bounded queue and get a future back straight away. A single writer thread takes
+ * messages off the queue in groups, and writes and commits each group as one batch in one transaction, so the cost
+ * of a commit is shared by every message in the group. A group is closed when it reaches maxGroupSize messages, or
+ * when maxGroupLatencyMillis has passed since its first message was taken, whichever comes first. Once the group is
+ * committed, the future of each message is completed with the persisted message, or with null if it was rejected.
+ *
+ * When the queue is full, submit() returns null instead of blocking, so the caller can push back on the client.
+ */
+public class IngestionQueue {
+    private final MessageStore messageDAO;
+    private final BlockingQueue<PendingMessage> queue;
+    private final int maxGroupSize;
+    private final long maxGroupLatencyNanos;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder groups = new LongAdder();
+    private final LongAdder groupedMessages = new LongAdder();
+
+    /**
+     * @param messageDAO the store the groups are written with.
+     * @param capacity the maximum number of messages waiting to be written.
+     * @param maxGroupSize the maximum number of messages written in one transaction.
+     * @param maxGroupLatencyMillis the longest a group waits for more messages before it is written.
+     */
+    public IngestionQueue(MessageStore messageDAO, int capacity, int maxGroupSize, long maxGroupLatencyMillis) {
+        this.messageDAO = messageDAO;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxGroupSize = Math.max(1, maxGroupSize);
+        this.maxGroupLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxGroupLatencyMillis);
+        this.writer = new Thread(this::writeLoop, "message-ingestion-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue a message to be written.
+     * @param message a Message object without a message_id.
+     * @return a future completed with the persisted Message, or with null if it was rejected. Returns null
+     * instead of a future if the queue is full.
+     */
+    public CompletableFuture<Message> submit(Message message) {
+        PendingMessage pending = new PendingMessage(message);
+        if (!running || !queue.offer(pending)) {
+            rejected.increment();
+            return null;
+        }
+        accepted.increment();
+        return pending.future;
+    }
+
+    /**
+     * Stop taking new messages, write the ones already queued, and stop the writer thread.
+     */
+    public void shutdown() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of messages waiting to be written.
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of messages accepted onto the queue.
+     */
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    /**
+     * @return the number of messages turned away because the queue was full.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the number of groups committed.
+     */
+    public long getGroups() {
+        return groups.sum();
+    }
+
+    /**
+     * @return the mean number of messages per committed group.
+     */
+    public double getAvgGroupSize() {
+        long count = groups.sum();
+        return count == 0 ? 0 : (double) groupedMessages.sum() / count;
+    }
+
+    private void writeLoop() {
+        List<PendingMessage> group = new ArrayList<>(maxGroupSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = running ? queue.poll(100, TimeUnit.MILLISECONDS) : queue.poll();
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + maxGroupLatencyNanos;
+                while (group.size() < maxGroupSize) {
+                    // Take whatever is already waiting without blocking, then wait out the rest of the latency budget.
+                    if (queue.drainTo(group, maxGroupSize - group.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                // shutdown() interrupts the writer; the loop exits once the queue is drained.
+            }
+            if (!group.isEmpty()) {
+                write(group);
+                group.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingMessage> group) {
+        List<Message> messages = new ArrayList<>(group.size());
+        for (PendingMessage pending : group) {
+            messages.add(pending.message);
+        }
+        try {
+            List<BatchItemResult> results = messageDAO.insertMessages(messages);
+            groups.increment();
+            groupedMessages.add(group.size());
+            for (int i = 0; i < group.size(); i++) {
+                BatchItemResult result = results.get(i);
+                Message message = messages.get(i);
+                if (BatchItemResult.CREATED.equals(result.getStatus())) {
+                    group.get(i).future.complete(new Message(result.getMessage_id(), message.getPosted_by(),
+                            message.getMessage_text(), message.getTime_posted_epoch()));
+                } else {
+                    group.get(i).future.complete(null);
+                }
+            }
+        } catch (RuntimeException e) {
+            for (PendingMessage pending : group) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * A queued message and the future its submitter is waiting on.
+     */
+    private static class PendingMessage {
+        private final Message message;
+        private final CompletableFuture<Message> future = new CompletableFuture<>();
+
+        PendingMessage(Message message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package Service;
+
+import Model.Message;
+import Util.JsonCodec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The MessageBroadcaster class fans out message changes to live subscribers, so clients can be pushed new posts
+ * instead of polling the full message list.
+ *
+ * - Each change is published once as an Event, whose JSON is written once and shared by every subscriber.
+ * - Each subscriber has a bounded ring buffer of events waiting to be sent. A subscriber whose buffer is full when an
+ * event arrives is too slow to keep up, and is disconnected rather than let the buffer grow.
+ * - A subscriber may follow one account only; the subscribers of each account are kept apart, so an event is only
+ * offered to the subscribers that want it.
+ * - The most recent events are kept in a history, so a subscriber that reconnects with the id of the last event it
+ * saw is sent the events it missed. If they are no longer all in the history, or the id is from before a restart, it
+ * is sent a "reset" event instead, telling it to reload.
+ *
+ * Writes to a sink block until the client has taken the bytes, so each subscriber's buffer is drained by its own
+ * writer: a task on a cached pool of daemon threads, of which a subscriber holds at most one, and only while it has
+ * events to send. A client that stops reading therefore only stalls its own writer, and a write that has not
+ * returned within writeTimeoutMillis gets the subscriber disconnected as slow. A single timer thread, started with the
+ * first subscriber, checks those timeouts and sends each subscriber a heartbeat now and then, which also notices dead
+ * connections. Getters are named so that Jackson can serialize the broadcaster's statistics directly.
+ */
+public class MessageBroadcaster {
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+    public static final String RESET = "reset";
+
+    private static final ObjectWriter MESSAGE_WRITER = JsonCodec.writer(Message.class);
+
+    /**
+     * Random for each broadcaster, so event ids from before a restart are never taken for current ones.
+     */
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+    private final int bufferSize;
+    private final int historySize;
+    private final int maxSubscribers;
+    private final long writeTimeoutMillis;
+    private final long heartbeatMillis;
+
+    private final Deque<Event> history = new ArrayDeque<>();
+    private long lastSequence;
+    private final Set<Subscription> allAccounts = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Set<Subscription>> byAccount = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private ScheduledExecutorService timer;
+    private ExecutorService writers;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder slowDisconnects = new LongAdder();
+    private final LongAdder resumes = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+
+    /**
+     * @param bufferSize the number of events each subscriber may have waiting before it is disconnected.
+     * @param historySize the number of recent events kept for subscribers that resume.
+     * @param maxSubscribers the maximum number of subscribers at once.
+     * @param writeTimeoutMillis the longest a write to one subscriber may take before it is disconnected.
+     * @param heartbeatMillis the time between two heartbeats to each subscriber, 0 for none.
+     */
+    public MessageBroadcaster(int bufferSize, int historySize, int maxSubscribers, long writeTimeoutMillis,
+            long heartbeatMillis) {
+        this.bufferSize = Math.max(1, bufferSize);
+        this.historySize = Math.max(0, historySize);
+        this.maxSubscribers = maxSubscribers;
+        this.writeTimeoutMillis = Math.max(1, writeTimeoutMillis);
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    /**
+     * Send a change to the subscribers that follow all accounts or the message's account.
+     * @param type CREATED, UPDATED or DELETED.
+     * @param message the message as it now is, or as it was before it was deleted.
+     */
+    public void publish(String type, Message message) {
+        if (message == null) {
+            return;
+        }
+        String data;
+        try {
+            data = MESSAGE_WRITER.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        List<Subscription> slow = new ArrayList<>();
+        synchronized (history) {
+            Event event = new Event(++lastSequence, type, message.getPosted_by(), data);
+            if (historySize > 0) {
+                if (history.size() == historySize) {
+                    history.removeFirst();
+                }
+                history.addLast(event);
+            }
+            published.increment();
+            offer(event, allAccounts, slow);
+            Set<Subscription> followers = byAccount.get(message.getPosted_by());
+            if (followers != null) {
+                offer(event, followers, slow);
+            }
+        }
+        for (Subscription subscription : slow) {
+            slowDisconnects.increment();
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Start sending events to a sink.
+     * @param accountId the account to follow, or null for all accounts.
+     * @param lastEventId the id of the last event the subscriber saw before it reconnected, or null.
+     * @param sink where the events are written.
+     * @return the subscription, to cancel when the subscriber goes away, or null if there are maxSubscribers already.
+     */
+    public Subscription subscribe(Integer accountId, String lastEventId, Sink sink) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            return null;
+        }
+        Subscription subscription = new Subscription(accountId, sink);
+        startWriters();
+        synchronized (history) {
+            // Replaying and registering under the publish lock means no event is missed or sent twice in between.
+            if (lastEventId != null) {
+                replay(subscription, lastEventId);
+            }
+            if (accountId == null) {
+                allAccounts.add(subscription);
+            } else {
+                byAccount.computeIfAbsent(accountId, key -> ConcurrentHashMap.newKeySet()).add(subscription);
+            }
+        }
+        subscription.schedule();
+        return subscription;
+    }
+
+    /**
+     * @return true if another subscriber would be accepted now.
+     */
+    public boolean hasCapacity() {
+        return subscribers.get() < maxSubscribers;
+    }
+
+    /**
+     * @return the number of subscribers.
+     */
+    public int getSubscribers() {
+        return subscribers.get();
+    }
+
+    /**
+     * @return the number of events published.
+     */
+    public long getPublished() {
+        return published.sum();
+    }
+
+    /**
+     * @return the number of events sent to subscribers.
+     */
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    /**
+     * @return the number of subscribers disconnected for falling behind, or for a write that timed out.
+     */
+    public long getSlowDisconnects() {
+        return slowDisconnects.sum();
+    }
+
+    /**
+     * @return the number of subscribers that resumed from the history.
+     */
+    public long getResumes() {
+        return resumes.sum();
+    }
+
+    /**
+     * @return the number of subscribers told to reload because their last event was too old.
+     */
+    public long getResets() {
+        return resets.sum();
+    }
+
+    private void offer(Event event, Set<Subscription> subscriptions, List<Subscription> slow) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.buffer.offer(event)) {
+                subscription.schedule();
+            } else {
+                slow.add(subscription);
+            }
+        }
+    }
+
+    /**
+     * Queue the events after lastEventId for a new subscriber, or a reset event if they can not all be replayed.
+     */
+    private void replay(Subscription subscription, String lastEventId) {
+        long sequence = parseSequence(lastEventId);
+        long oldest = history.isEmpty() ? lastSequence + 1 : history.peekFirst().sequence;
+        if (sequence < 0 || sequence > lastSequence || sequence + 1 < oldest) {
+            resets.increment();
+            subscription.buffer.offer(new Event(lastSequence, RESET, 0, "{}"));
+            return;
+        }
+        List<Event> missed = new ArrayList<>();
+        for (Event event : history) {
+            if (event.sequence > sequence && subscription.wants(event)) {
+                missed.add(event);
+            }
+        }
+        if (missed.size() > bufferSize) {
+            resets.increment();
+            subscription.buffer.offer(new Event(lastSequence, RESET, 0, "{}"));
+            return;
+        }
+        resumes.increment();
+        subscription.buffer.addAll(missed);
+    }
+
+    /**
+     * @return the sequence number of an event id of this broadcaster, or -1 if it is from another.
+     */
+    private long parseSequence(String eventId) {
+        int separator = eventId.lastIndexOf('-');
+        if (separator < 0 || !eventId.substring(0, separator).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private synchronized void startWriters() {
+        if (timer != null) {
+            return;
+        }
+        writers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "message-stream-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-stream-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkMillis = Math.max(1, writeTimeoutMillis / 2);
+        timer.scheduleWithFixedDelay(() -> {
+            long now = System.nanoTime();
+            for (Subscription subscription : allSubscriptions()) {
+                long started = subscription.writeStarted;
+                if (started != 0 && now - started > TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis)) {
+                    slowDisconnects.increment();
+                    subscription.cancel();
+                }
+            }
+        }, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+        if (heartbeatMillis > 0) {
+            timer.scheduleWithFixedDelay(() -> {
+                for (Subscription subscription : allSubscriptions()) {
+                    subscription.heartbeatDue = true;
+                    subscription.schedule();
+                }
+            }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private List<Subscription> allSubscriptions() {
+        List<Subscription> all = new ArrayList<>(allAccounts);
+        for (Set<Subscription> followers : byAccount.values()) {
+            all.addAll(followers);
+        }
+        return all;
+    }
+
+    /**
+     * Where the events of one subscriber are written, eg a server-sent event stream.
+     */
+    public interface Sink {
+        /**
+         * @param event the next event for the subscriber.
+         */
+        void send(Event event);
+
+        /**
+         * Keep the connection alive while there are no events.
+         */
+        void heartbeat();
+
+        /**
+         * End the connection.
+         */
+        void close();
+    }
+
+    /**
+     * One change to one message.
+     */
+    public class Event {
+        private final long sequence;
+        private final String type;
+        private final int accountId;
+        private final String data;
+
+        Event(long sequence, String type, int accountId, String data) {
+            this.sequence = sequence;
+            this.type = type;
+            this.accountId = accountId;
+            this.data = data;
+        }
+
+        /**
+         * @return the id of the event, to send back as Last-Event-ID when resuming.
+         */
+        public String getId() {
+            return epoch + "-" + sequence;
+        }
+
+        /**
+         * @return CREATED, UPDATED, DELETED or RESET.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return the JSON representation of the message.
+         */
+        public String getData() {
+            return data;
+        }
+    }
+
+    /**
+     * One subscriber: its filter, its ring buffer of waiting events, and its sink.
+     */
+    public class Subscription {
+        private final Integer accountId;
+        private final Sink sink;
+        private final BlockingQueue<Event> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private volatile boolean heartbeatDue;
+        /**
+         * When the write in progress started, by System.nanoTime, or 0 when the writer is not writing.
+         */
+        private volatile long writeStarted;
+
+        Subscription(Integer accountId, Sink sink) {
+            this.accountId = accountId;
+            this.sink = sink;
+        }
+
+        /**
+         * Stop sending events and close the sink. Cancelling twice has no effect.
+         */
+        public void cancel() {
+            if (!cancelled.compareAndSet(false, true)) {
+                return;
+            }
+            if (accountId == null) {
+                allAccounts.remove(this);
+            } else {
+                Set<Subscription> followers = byAccount.get(accountId);
+                if (followers != null) {
+                    followers.remove(this);
+                }
+            }
+            subscribers.decrementAndGet();
+            buffer.clear();
+            sink.close();
+        }
+
+        boolean wants(Event event) {
+            return accountId == null || accountId == event.accountId;
+        }
+
+        /**
+         * Have a writer drain the buffer, unless one is already due to.
+         */
+        void schedule() {
+            if (!cancelled.get() && scheduled.compareAndSet(false, true)) {
+                writers.execute(this::drain);
+            }
+        }
+
+        /**
+         * Send the waiting events in order. Only one writer drains a subscription at a time: an event that arrives
+         * while the buffer is being drained is picked up by the loop rather than by a second writer. A sink that
+         * fails ends the subscription.
+         */
+        private void drain() {
+            try {
+                do {
+                    try {
+                        if (heartbeatDue) {
+                            heartbeatDue = false;
+                            if (buffer.isEmpty()) {
+                                writeStarted = System.nanoTime();
+                                sink.heartbeat();
+                            }
+                        }
+                        Event event;
+                        while (!cancelled.get() && (event = buffer.poll()) != null) {
+                            writeStarted = System.nanoTime();
+                            sink.send(event);
+                            delivered.increment();
+                        }
+                    } finally {
+                        writeStarted = 0;
+                        scheduled.set(false);
+                    }
+                } while (!cancelled.get() && (!buffer.isEmpty() || heartbeatDue)
+                        && scheduled.compareAndSet(false, true));
+            } catch (RuntimeException e) {
+                System.out.println(e.getMessage());
+                cancel();
+            }
+        }
+    }
+}
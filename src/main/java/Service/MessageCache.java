@@ -0,0 +1,149 @@
+package Service;
+
+import Model.Message;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * The MessageCache class is a bounded, read-through cache of messages by message_id, kept in front of
+ * MessageDAO.findMessage.
+ *
+ * - Eviction is size-based, using Caffeine's W-TinyLFU policy, so popular messages stay cached under churn.
+ * - Entries expire ttlSeconds after they were loaded or written.
+ * - Missing message_ids are cached too (as empty entries), for the shorter negativeTtlSeconds, so repeated lookups
+ * of an unknown id do not reach the database.
+ *
+ * Writers must keep the cache up to date with put(), update() and remove(), which write through rather than just
+ * invalidating, so the next read after a write is still a hit. Getters are named so that Jackson can serialize the
+ * cache's statistics directly.
+ */
+public class MessageCache {
+    private final LoadingCache<Integer, Optional<Message>> cache;
+
+    /**
+     * @param loader loads a message from the database by its message_id, returning null if there is none.
+     * @param maxSize the maximum number of messages (and missing ids) cached.
+     * @param ttlSeconds how long a message stays cached.
+     * @param negativeTtlSeconds how long a missing message_id stays cached.
+     */
+    public MessageCache(IntFunction<Message> loader, long maxSize, long ttlSeconds, long negativeTtlSeconds) {
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        long negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<Integer, Optional<Message>>() {
+                    @Override
+                    public long expireAfterCreate(Integer key, Optional<Message> value, long currentTime) {
+                        return value.isPresent() ? ttlNanos : negativeTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Integer key, Optional<Message> value, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Integer key, Optional<Message> value, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build(messageId -> Optional.ofNullable(loader.apply(messageId)));
+    }
+
+    /**
+     * @param messageId the identification number of a message.
+     * @return the message, loaded from the database on a miss, or null if there is no such message.
+     */
+    public Message get(int messageId) {
+        return cache.get(messageId).orElse(null);
+    }
+
+    /**
+     * @param messageId the identification number of a message.
+     * @return the cached message, or null if it is not cached or is cached as missing. Never loads.
+     */
+    public Message getIfPresent(int messageId) {
+        Optional<Message> cached = cache.getIfPresent(messageId);
+        return cached == null ? null : cached.orElse(null);
+    }
+
+    /**
+     * Write a new or updated message through to the cache.
+     * @param message the message as it now is in the database.
+     */
+    public void put(Message message) {
+        cache.put(message.getMessage_id(), Optional.of(message));
+    }
+
+    /**
+     * Write a patched message through to the cache, if it is cached. A message that is not cached is left to be
+     * loaded on the next read, and one cached as missing stays missing, so a patch that finishes after a concurrent
+     * delete can not bring the message back.
+     * @param message the message as it now is in the database.
+     */
+    public void update(Message message) {
+        cache.asMap().computeIfPresent(message.getMessage_id(),
+                (messageId, cached) -> cached.isPresent() ? Optional.of(message) : cached);
+    }
+
+    /**
+     * Record that a message no longer exists.
+     * @param messageId the identification number of the deleted message.
+     */
+    public void remove(int messageId) {
+        cache.put(messageId, Optional.empty());
+    }
+
+    /**
+     * @return the estimated number of cached entries.
+     */
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return the fraction of lookups that were served from the cache.
+     */
+    public double getHitRatio() {
+        return cache.stats().hitRate();
+    }
+
+    /**
+     * @return the number of lookups served from the cache.
+     */
+    public long getHits() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * @return the number of lookups that had to load from the database.
+     */
+    public long getMisses() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * @return the number of entries evicted for size or expiry.
+     */
+    public long getEvictions() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * @return the mean time spent loading a message from the database, in microseconds.
+     */
+    public double getAvgLoadMicros() {
+        CacheStats stats = cache.stats();
+        return stats.averageLoadPenalty() / 1000;
+    }
+}
@@ -1,24 +1,121 @@
 package Service;
 
+import Model.BatchItemResult;
 import Model.Message;
-import DAO.MessageDAO;
+import Model.MessageChanges;
+import Model.MessagePage;
+import DAO.MessageRowHandler;
+import DAO.MessageStore;
+import DAO.StorageBackend;
+import Util.AppConfig;
+import Util.MessageVersions;
+import Util.ThroughputMeter;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class MessageService {
-    private MessageDAO messageDAO;
     /**
-     * no-args constructor for creating a new MessageService with a new MessageDAO.
+     * Number of messages on a page when the client does not ask for a limit.
+     */
+    public static final int DEFAULT_PAGE_SIZE = AppConfig.getInt("page.defaultSize", 100);
+    /**
+     * Largest page a client may ask for.
+     */
+    public static final int MAX_PAGE_SIZE = AppConfig.getInt("page.maxSize", 1000);
+    /**
+     * Largest number of messages accepted in one batch.
+     */
+    public static final int MAX_BATCH_SIZE = AppConfig.getInt("batch.maxSize", 1000);
+
+    private MessageStore messageDAO;
+    private final ThroughputMeter batchMeter = new ThroughputMeter();
+    /**
+     * Write-behind queue for new messages, or null when messages are written synchronously.
+     */
+    private IngestionQueue ingestionQueue;
+    /**
+     * Read-through cache of messages by message_id, written through on every change made by this service.
+     */
+    private final MessageCache messageCache;
+    /**
+     * Cache of the most recent message_ids of each account, updated in place by every change made by this service.
+     */
+    private final TimelineCache timelineCache;
+    /**
+     * Inverted index of message_text, updated in place by every change made by this service.
+     */
+    private final SearchIndex searchIndex;
+    /**
+     * Live feed of every change made by this service, for streaming subscribers.
+     */
+    private final MessageBroadcaster broadcaster = newBroadcaster();
+    /**
+     * no-args constructor for creating a new MessageService with the message store of the storage backend named by
+     * socialmedia.storage.engine.
      */
     public MessageService(){
-        messageDAO = new MessageDAO();
+        this(StorageBackend.fromConfig().messageStore());
     }
     /**
-     * Constructor for a MessageService when a MessageDAO is provided.
-     * @param MessageDAO
+     * Constructor for a MessageService when a MessageStore is provided.
+     * If socialmedia.ingest.mode is "async", new messages are written through an IngestionQueue with group commit,
+     * tuned by socialmedia.ingest.queueCapacity, ingest.maxGroupSize and ingest.maxGroupLatencyMillis.
+     * @param messageStore
      */
-    public MessageService(MessageDAO MessageDAO){
-        this.messageDAO = MessageDAO;
+    public MessageService(MessageStore messageStore){
+        this.messageDAO = messageStore;
+        this.messageCache = newMessageCache(messageStore);
+        this.timelineCache = newTimelineCache(messageStore, messageCache);
+        this.searchIndex = newSearchIndex(messageStore, messageCache);
+        if ("async".equalsIgnoreCase(AppConfig.getString("ingest.mode", "sync"))) {
+            ingestionQueue = new IngestionQueue(messageStore,
+                    AppConfig.getInt("ingest.queueCapacity", 10000),
+                    AppConfig.getInt("ingest.maxGroupSize", 256),
+                    AppConfig.getLong("ingest.maxGroupLatencyMillis", 5));
+        }
+    }
+    /**
+     * The cache is sized by socialmedia.cache.message.maxSize, and entries expire after cache.message.ttlSeconds,
+     * or cache.message.negativeTtlSeconds for message_ids that were not found.
+     */
+    private static MessageCache newMessageCache(MessageStore messageDAO) {
+        return new MessageCache(messageDAO::findMessage,
+                AppConfig.getLong("cache.message.maxSize", 100000),
+                AppConfig.getLong("cache.message.ttlSeconds", 300),
+                AppConfig.getLong("cache.message.negativeTtlSeconds", 30));
+    }
+    /**
+     * Each timeline holds up to socialmedia.cache.timeline.maxPerAccount message_ids, all timelines together hold up
+     * to cache.timeline.maxIds, and a timeline that is not read for cache.timeline.idleSeconds is dropped.
+     */
+    private static TimelineCache newTimelineCache(MessageStore messageDAO, MessageCache messageCache) {
+        return new TimelineCache(messageDAO::findUserMessages, messageDAO::findUserMessagesAfter, messageCache,
+                AppConfig.getInt("cache.timeline.maxPerAccount", 1000),
+                AppConfig.getLong("cache.timeline.maxIds", 1000000),
+                AppConfig.getLong("cache.timeline.idleSeconds", 600));
+    }
+    /**
+     * The index is built from every message in socialmedia.search.buildParallelism slices at once, one per processor
+     * by default. Hits are checked against the message cache.
+     */
+    private static SearchIndex newSearchIndex(MessageStore messageDAO, MessageCache messageCache) {
+        return new SearchIndex(messageDAO.getAllMessages(), messageCache::get,
+                AppConfig.getInt("search.buildParallelism", Runtime.getRuntime().availableProcessors()));
+    }
+    /**
+     * Each subscriber may have socialmedia.stream.bufferSize events waiting, the last stream.historySize events are
+     * kept for resuming, at most stream.maxSubscribers subscribe at once, a subscriber whose write takes longer than
+     * stream.writeTimeoutMillis is disconnected, and idle subscribers get a heartbeat every stream.heartbeatSeconds.
+     */
+    private static MessageBroadcaster newBroadcaster() {
+        return new MessageBroadcaster(AppConfig.getInt("stream.bufferSize", 256),
+                AppConfig.getInt("stream.historySize", 1024),
+                AppConfig.getInt("stream.maxSubscribers", 10000),
+                AppConfig.getLong("stream.writeTimeoutMillis", 10000),
+                AppConfig.getLong("stream.heartbeatSeconds", 15) * 1000);
     }
     /**
      * Use the MessageDAO to retrieve all messages.
@@ -35,27 +132,120 @@ public class MessageService {
      * @return The persisted Message if the persistence is successful.
      */
     public Message addMessage(Message Message) {
-        return messageDAO.insertMessage(Message);
+        return cached(messageDAO.insertMessage(Message));
+    }
+
+    /**
+     * Persist a message through the write-behind queue when asynchronous ingestion is enabled, or synchronously 
+     * otherwise. The given message will not have an id provided.
+     *
+     * @param message a Message object.
+     * @return A future completed with the persisted Message, or with null if the persistence is unsuccessful. 
+     * Returns null instead of a future if the ingestion queue is full.
+     */
+    public CompletableFuture<Message> submitMessage(Message message) {
+        if (ingestionQueue == null) {
+            return CompletableFuture.completedFuture(addMessage(message));
+        }
+        CompletableFuture<Message> future = ingestionQueue.submit(message);
+        return future == null ? null : future.thenApply(this::cached);
     }
 
     /**
-     * Use the MessageDAO to get a message given its message_id.
+     * @return true if new messages are written through the write-behind queue.
+     */
+    public boolean isAsyncIngestion() {
+        return ingestionQueue != null;
+    }
+
+    /**
+     * @return the write-behind queue, or null when messages are written synchronously.
+     */
+    public IngestionQueue getIngestionQueue() {
+        return ingestionQueue;
+    }
+
+    /**
+     * Stop taking new messages, and write the ones already on the write-behind queue, if there is one.
+     */
+    public void shutdown() {
+        if (ingestionQueue != null) {
+            ingestionQueue.shutdown();
+        }
+    }
+
+    /**
+     * Use the MessageDAO to persist a batch of messages in one transaction. The given messages will not have ids
+     * provided.
+     *
+     * @param messages the Message objects to persist, at most MAX_BATCH_SIZE of them.
+     * @return One result per message, in the same order, or null if the batch is empty or too large.
+     */
+    public List<BatchItemResult> addMessages(List<Message> messages) {
+        if (messages == null || messages.isEmpty() || messages.size() > MAX_BATCH_SIZE) {
+            return null;
+        }
+        long start = System.nanoTime();
+        List<BatchItemResult> results = messageDAO.insertMessages(messages);
+        batchMeter.record(messages.size(), System.nanoTime() - start);
+        for (int i = 0; i < results.size(); i++) {
+            BatchItemResult result = results.get(i);
+            if (BatchItemResult.CREATED.equals(result.getStatus())) {
+                Message message = messages.get(i);
+                cached(new Message(result.getMessage_id(), message.getPosted_by(),
+                        message.getMessage_text(), message.getTime_posted_epoch()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return the meter of the rows per second written by addMessages.
+     */
+    public ThroughputMeter getBatchMeter() {
+        return batchMeter;
+    }
+
+    /**
+     * @return the message cache, whose getters report its size and hit ratio.
+     */
+    public MessageCache getMessageCache() {
+        return messageCache;
+    }
+
+    /**
+     * @return the timeline cache, whose getters report its size and hit ratio.
+     */
+    public TimelineCache getTimelineCache() {
+        return timelineCache;
+    }
+
+    /**
+     * Get a message given its message_id, from the message cache, or from the MessageDAO on a miss.
      *
      * @param messageId the identification number of a message in the database
      * @return The identified Message if it is found in the database.
      */
     public Message getMessage(int messageId) {
-        return messageDAO.findMessage(messageId);
+        return messageCache.get(messageId);
     }
 
     /**
-     * Use the MessageDAO to delete a message given its message_id.
+     * Use the MessageDAO to delete a message given its message_id. The message is deleted and returned in a single
+     * round-trip to the database.
      *
      * @param messageId the identification number of a message in the database
      * @return The identified Message if it is found in the database.
      */
     public Message deleteMessage(int messageId) {
-        return messageDAO.removeMessage(messageId);
+        Message deleted = messageDAO.removeMessage(messageId);
+        if (deleted != null) {
+            messageCache.remove(messageId);
+            timelineCache.messageDeleted(deleted);
+            searchIndex.remove(deleted);
+            broadcaster.publish(MessageBroadcaster.DELETED, deleted);
+        }
+        return deleted;
     }
 
     /**
@@ -66,16 +256,196 @@ public class MessageService {
      * @return The patched Message in the database.
      */
     public Message patchMessage(Message updatedMessage, Message newMessage) {
-        return messageDAO.updateMessage(updatedMessage, newMessage);
+        return cachedUpdate(updatedMessage, messageDAO.updateMessage(updatedMessage, newMessage));
+    }
+
+    /**
+     * Use the MessageDAO to patch a message given its message_id, in a single round-trip to the database.
+     *
+     * @param messageId the identification number of a message in the database
+     * @param newMessage a Message object containing the updating message_text.
+     * @return The patched Message in the database, or null if there is no such message or the text is invalid.
+     */
+    public Message patchMessage(int messageId, Message newMessage) {
+        if (newMessage == null) {
+            return null;
+        }
+        // The old text, if cached, lets the search index drop the terms the patch removes.
+        Message before = messageCache.getIfPresent(messageId);
+        return cachedUpdate(before, messageDAO.updateMessageText(messageId, newMessage.getMessage_text()));
     }
 
     /**
-     * Use the MessageDAO to get all the messages of a particuler user given their account_id.
+     * Get all the messages of a particuler user given their account_id, from the timeline cache, reading from the
+     * MessageDAO only the messages older than a timeline holds.
      *
      * @param accountId the identification number of an account in the database
      * @return A list of Messages associated with the identified Account if it is found in the database.
      */
     public List<Message> getUserMessages(int accountId) { 
-        return messageDAO.findUserMessages(accountId);
+        return timelineCache.get(accountId);
+    }
+
+    /**
+     * Use the MessageDAO to get one page of all messages, in message_id order.
+     *
+     * @param afterId the cursor returned with the previous page, or 0 for the first page.
+     * @param limit the maximum number of messages on the page, capped at MAX_PAGE_SIZE.
+     * @return The page of Messages, with the cursor of the next page if there is one.
+     */
+    public MessagePage getMessagesPage(int afterId, int limit) {
+        int pageSize = clampPageSize(limit);
+        // Ask for one extra row to learn whether another page follows without a separate count query.
+        return toPage(messageDAO.getMessagesAfter(afterId, pageSize + 1), pageSize);
+    }
+
+    /**
+     * Use the MessageDAO to get one page of the messages of a particular user, in message_id order.
+     *
+     * @param accountId the identification number of an account in the database
+     * @param afterId the cursor returned with the previous page, or 0 for the first page.
+     * @param limit the maximum number of messages on the page, capped at MAX_PAGE_SIZE.
+     * @return The page of Messages, with the cursor of the next page if there is one.
+     */
+    public MessagePage getUserMessagesPage(int accountId, int afterId, int limit) {
+        int pageSize = clampPageSize(limit);
+        return toPage(messageDAO.findUserMessagesAfter(accountId, afterId, pageSize + 1), pageSize);
+    }
+
+    /**
+     * Use the MessageDAO to stream all messages, in message_id order, without collecting them into a list.
+     *
+     * @param handler receives each Message as it is read from the database.
+     * @return true if every message was streamed, false if the read failed part way.
+     * @throws IOException if the handler failed to write a message out.
+     */
+    public boolean streamAllMessages(MessageRowHandler handler) throws IOException {
+        return messageDAO.streamAllMessages(handler);
+    }
+
+    /**
+     * Use the MessageDAO to stream all the messages of a particular user, in message_id order.
+     *
+     * @param accountId the identification number of an account in the database
+     * @param handler receives each Message as it is read from the database.
+     * @return true if every message was streamed, false if the read failed part way.
+     * @throws IOException if the handler failed to write a message out.
+     */
+    public boolean streamUserMessages(int accountId, MessageRowHandler handler) throws IOException {
+        return messageDAO.streamUserMessages(accountId, handler);
+    }
+
+    /**
+     * Follow the changes made to messages from now on: every new, patched and deleted message.
+     *
+     * @param accountId the account to follow, or null for all accounts.
+     * @param lastEventId the id of the last event seen before reconnecting, to be sent the events missed since, or null.
+     * @param sink where the events are written.
+     * @return the subscription, to cancel when the subscriber goes away, or null if there are too many subscribers.
+     */
+    public MessageBroadcaster.Subscription subscribe(Integer accountId, String lastEventId, MessageBroadcaster.Sink sink) {
+        return broadcaster.subscribe(accountId, lastEventId, sink);
+    }
+
+    /**
+     * @return the broadcaster of message changes, whose getters report its subscribers and events.
+     */
+    public MessageBroadcaster getBroadcaster() {
+        return broadcaster;
+    }
+
+    /**
+     * Search the text of all messages.
+     *
+     * @param query one or more groups of terms separated by OR, where the terms of a group must all match and a term
+     * ending in * matches by prefix.
+     * @param limit the maximum number of messages to return, capped at MAX_PAGE_SIZE.
+     * @return the matching Messages with the highest message_ids, highest first.
+     */
+    public List<Message> searchMessages(String query, int limit) {
+        return searchIndex.search(query, clampPageSize(limit));
+    }
+
+    /**
+     * Get the changes to all messages since a version of the change log, so a client can catch up without
+     * downloading every message again.
+     *
+     * @param sinceVersion the version the client has caught up to, or null to only learn the current version.
+     * @param limit the maximum number of changes to return, capped at MAX_PAGE_SIZE.
+     * @return the changes after sinceVersion, or null if the change log no longer holds all of them.
+     */
+    public MessageChanges getChangesSince(Long sinceVersion, int limit) {
+        if (sinceVersion == null) {
+            return new MessageChanges(new ArrayList<>(), messageDAO.getChangeVersion(), false);
+        }
+        return messageDAO.getChangesSince(sinceVersion, clampPageSize(limit));
+    }
+
+    /**
+     * @return the search index, whose getters report its size and use.
+     */
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Write a message that was just inserted through to the message cache and its account's timeline.
+     * @param message the persisted Message, or null if the write failed.
+     * @return the same message.
+     */
+    private Message cached(Message message) {
+        if (message != null) {
+            messageCache.put(message);
+            timelineCache.messageAdded(message);
+            searchIndex.add(message);
+            broadcaster.publish(MessageBroadcaster.CREATED, message);
+        }
+        return message;
+    }
+
+    /**
+     * Write a message that was just patched through to the message cache and the search index. A patch keeps the
+     * message's id and account, so timelines are unchanged.
+     * @param before the Message before the patch, or null if it is not known.
+     * @param message the patched Message, or null if the write failed.
+     * @return the same message.
+     */
+    private Message cachedUpdate(Message before, Message message) {
+        if (message != null) {
+            messageCache.update(message);
+            searchIndex.update(before, message);
+            broadcaster.publish(MessageBroadcaster.UPDATED, message);
+        }
+        return message;
+    }
+
+    /**
+     * @return the version of all messages, to take before reading them for a conditional response.
+     */
+    public MessageVersions.Version getMessagesVersion() {
+        return MessageVersions.all();
+    }
+
+    /**
+     * @param accountId the identification number of an account in the database
+     * @return the version of the messages of the account, to take before reading them for a conditional response.
+     */
+    public MessageVersions.Version getUserMessagesVersion(int accountId) {
+        return MessageVersions.ofAccount(accountId);
+    }
+
+    private static int clampPageSize(int limit) {
+        if (limit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    private static MessagePage toPage(List<Message> messages, int pageSize) {
+        if (messages.size() <= pageSize) {
+            return new MessagePage(messages, null);
+        }
+        List<Message> page = messages.subList(0, pageSize);
+        return new MessagePage(page, page.get(pageSize - 1).getMessage_id());
     }
 }
@@ -0,0 +1,429 @@
+package Service;
+
+import Model.Message;
+import Util.PostingList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The SearchIndex class is an in-memory inverted index over message_text, so that searches do not scan the message
+ * table with LIKE '%term%'.
+ *
+ * - Text is split into lowercase terms of letters and digits.
+ * - Each term maps to a compressed PostingList of the message_ids that contain it. Terms are kept sorted, so a prefix
+ * query reads one range of them.
+ * - A query is one or more groups separated by OR; the terms of a group are ANDed, and a term ending in * matches
+ * every term with that prefix. Results are the matches with the highest message_id first, which is insertion order
+ * rather than time_posted_epoch.
+ *
+ * The index is built from every message when the service starts, and kept up to date by the service on every change.
+ * A message patched while not in the message cache may leave its old terms behind, and messages written around this
+ * service are not indexed at all, so each hit is checked against the current message before it is returned.
+ * Getters are named so that Jackson can serialize the index's statistics directly.
+ */
+public class SearchIndex {
+    /**
+     * Longest term indexed; longer runs of letters are cut to this length.
+     */
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private final NavigableMap<String, PostingList> postings = new ConcurrentSkipListMap<>();
+    private final IntFunction<Message> loader;
+    private final long buildMillis;
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+
+    /**
+     * @param messages every message, to build the index from.
+     * @param loader looks up the current state of a message by message_id, or returns null if it is gone.
+     * @param parallelism the number of slices the messages are split into and indexed in parallel.
+     */
+    public SearchIndex(List<Message> messages, IntFunction<Message> loader, int parallelism) {
+        this.loader = loader;
+        long start = System.nanoTime();
+        build(messages, Math.max(1, parallelism));
+        this.buildMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Index the terms of a new or patched message.
+     * @param message the persisted Message.
+     */
+    public void add(Message message) {
+        for (String term : tokenize(message.getMessage_text())) {
+            addPosting(term, message.getMessage_id());
+        }
+    }
+
+    /**
+     * Drop the terms of a message from the index.
+     * @param message the Message as it was before it was deleted or patched.
+     */
+    public void remove(Message message) {
+        for (String term : tokenize(message.getMessage_text())) {
+            removePosting(term, message.getMessage_id());
+        }
+    }
+
+    /**
+     * Re-index a patched message.
+     * @param before the Message before the patch, or null if it is not known.
+     * @param after the patched Message.
+     */
+    public void update(Message before, Message after) {
+        if (before != null) {
+            Set<String> kept = tokenize(after.getMessage_text());
+            for (String term : tokenize(before.getMessage_text())) {
+                if (!kept.contains(term)) {
+                    removePosting(term, before.getMessage_id());
+                }
+            }
+        }
+        add(after);
+    }
+
+    /**
+     * @param query the query, eg "hello world", "hello OR hi", or "hel*".
+     * @param limit the maximum number of messages to return.
+     * @return up to limit matching messages, highest message_id first. Empty if the query has no terms.
+     */
+    public List<Message> search(String query, int limit) {
+        queries.increment();
+        List<List<String>> groups = parse(query);
+        List<Message> results = new ArrayList<>();
+        if (groups.isEmpty()) {
+            return results;
+        }
+        List<int[]> matches = new ArrayList<>(groups.size());
+        for (List<String> group : groups) {
+            matches.add(intersect(group));
+        }
+        int[] candidates = union(matches);
+        for (int i = candidates.length - 1; i >= 0 && results.size() < limit; i--) {
+            Message message = loader.apply(candidates[i]);
+            if (message != null && matches(groups, tokenize(message.getMessage_text()))) {
+                results.add(message);
+            } else {
+                staleHits.increment();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @param text a message_text.
+     * @return the distinct terms of the text.
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> terms = new HashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (term.length() < MAX_TERM_LENGTH) {
+                    term.append(Character.toLowerCase(c));
+                }
+            } else if (term.length() > 0) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * @return the number of distinct terms in the index.
+     */
+    public int getTerms() {
+        return postings.size();
+    }
+
+    /**
+     * @return the number of bytes taken by the compressed postings.
+     */
+    public long getCompressedBytes() {
+        long bytes = 0;
+        for (PostingList list : postings.values()) {
+            bytes += list.getCompressedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the number of message_ids held in compressed postings.
+     */
+    public long getCompressedPostings() {
+        long count = 0;
+        for (PostingList list : postings.values()) {
+            count += list.getCompressedCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of searches.
+     */
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    /**
+     * @return the number of hits dropped because the message was gone or no longer matched.
+     */
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    /**
+     * @return how long the index took to build at startup, in milliseconds.
+     */
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+    /**
+     * Index the messages in parallel slices, each into its own term map, then join the slices' ids term by term.
+     * The messages are sorted by message_id first, so joining the slices in order keeps every posting sorted.
+     */
+    private void build(List<Message> messages, int parallelism) {
+        Message[] sorted = messages.toArray(new Message[0]);
+        Arrays.sort(sorted, (a, b) -> Integer.compare(a.getMessage_id(), b.getMessage_id()));
+        int slices = Math.min(parallelism, Math.max(1, sorted.length));
+        int sliceSize = (sorted.length + slices - 1) / slices;
+        List<Map<String, IntBuffer>> partials = IntStream.range(0, slices).parallel()
+                .mapToObj(slice -> {
+                    Map<String, IntBuffer> terms = new HashMap<>();
+                    int end = Math.min(sorted.length, (slice + 1) * sliceSize);
+                    for (int i = slice * sliceSize; i < end; i++) {
+                        for (String term : tokenize(sorted[i].getMessage_text())) {
+                            terms.computeIfAbsent(term, key -> new IntBuffer()).add(sorted[i].getMessage_id());
+                        }
+                    }
+                    return terms;
+                })
+                .collect(Collectors.toList());
+
+        Set<String> allTerms = new HashSet<>();
+        for (Map<String, IntBuffer> partial : partials) {
+            allTerms.addAll(partial.keySet());
+        }
+        allTerms.parallelStream().forEach(term -> {
+            IntBuffer joined = new IntBuffer();
+            for (Map<String, IntBuffer> partial : partials) {
+                IntBuffer ids = partial.get(term);
+                if (ids != null) {
+                    joined.addAll(ids);
+                }
+            }
+            postings.put(term, PostingList.of(joined.values, joined.size));
+        });
+    }
+
+    /**
+     * @return the groups of the query, each a list of terms, where a term ending in * is a prefix.
+     */
+    private static List<List<String>> parse(String query) {
+        List<List<String>> groups = new ArrayList<>();
+        if (query == null) {
+            return groups;
+        }
+        List<String> group = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            if (word.equals("OR")) {
+                if (!group.isEmpty()) {
+                    groups.add(group);
+                    group = new ArrayList<>();
+                }
+                continue;
+            }
+            boolean prefix = word.endsWith("*");
+            for (String term : tokenize(word)) {
+                group.add(prefix ? term + "*" : term);
+            }
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * @return the message_ids that match every term of the group, sorted ascending.
+     */
+    private int[] intersect(List<String> group) {
+        List<int[]> lists = new ArrayList<>();
+        for (String term : group) {
+            lists.add(lookup(term));
+        }
+        // Start from the shortest list, so every step is at most as long as it.
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+        int[] result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return the message_ids of a term, or of every term with the prefix if it ends in *.
+     */
+    private int[] lookup(String term) {
+        if (!term.endsWith("*")) {
+            PostingList list = postings.get(term);
+            return list == null ? new int[0] : list.toArray();
+        }
+        String prefix = term.substring(0, term.length() - 1);
+        Collection<PostingList> lists = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+        List<int[]> ids = new ArrayList<>(lists.size());
+        for (PostingList list : lists) {
+            ids.add(list.toArray());
+        }
+        return union(ids);
+    }
+
+    /**
+     * Add a message_id to the posting of a term, creating the posting if needed. The id is only added while the
+     * posting is still in the index, so it can not be lost to a removePosting that drops the posting concurrently.
+     */
+    private void addPosting(String term, int messageId) {
+        while (true) {
+            PostingList list = postings.computeIfAbsent(term, key -> new PostingList());
+            synchronized (list) {
+                if (postings.get(term) == list) {
+                    list.add(messageId);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a message_id from the posting of a term, and drop the term once its posting is empty, so terms of
+     * deleted and patched messages do not pile up.
+     */
+    private void removePosting(String term, int messageId) {
+        PostingList list = postings.get(term);
+        if (list == null) {
+            return;
+        }
+        synchronized (list) {
+            list.remove(messageId);
+            if (list.isEmpty()) {
+                postings.remove(term, list);
+            }
+        }
+    }
+
+    private static boolean matches(List<List<String>> groups, Set<String> terms) {
+        for (List<String> group : groups) {
+            boolean all = true;
+            for (String term : group) {
+                if (!contains(terms, term)) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(Set<String> terms, String term) {
+        if (!term.endsWith("*")) {
+            return terms.contains(term);
+        }
+        String prefix = term.substring(0, term.length() - 1);
+        for (String candidate : terms) {
+            if (candidate.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Merge sorted lists of message_ids in one pass over a bitset, rather than one pairwise merge per list, which
+     * would copy the growing result again for every term of a prefix. Message ids are dense, so the bitset is small.
+     * @return the message_ids in any of the lists, sorted ascending.
+     */
+    private static int[] union(List<int[]> lists) {
+        if (lists.size() == 1) {
+            return lists.get(0);
+        }
+        int max = -1;
+        for (int[] ids : lists) {
+            if (ids.length > 0) {
+                max = Math.max(max, ids[ids.length - 1]);
+            }
+        }
+        BitSet union = new BitSet(max + 1);
+        for (int[] ids : lists) {
+            for (int id : ids) {
+                union.set(id);
+            }
+        }
+        return union.stream().toArray();
+    }
+
+    /**
+     * A growable array of ints, used while building.
+     */
+    private static class IntBuffer {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntBuffer other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package Service;
+
+import Model.Message;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * The TimelineCache class caches the timeline of each account: the message_ids of its most recent messages, kept as
+ * a sorted int array. The messages themselves are looked up in the MessageCache, so each message is held once no
+ * matter how many timelines it appears in.
+ *
+ * - A timeline holds at most maxPerAccount ids. A timeline that had to be cut short is marked incomplete: its ids
+ * are still served from the cache, and only the account's older messages are read from the database, a page at a
+ * time by keyset.
+ * - The memory budget is maxIds message_ids across all timelines. Cold accounts are evicted first, using Caffeine's
+ * W-TinyLFU policy, and a timeline that is not read for idleSeconds is dropped.
+ * - Writers keep timelines up to date with messageAdded() and messageDeleted(), which edit a cached timeline in place
+ * of rebuilding it. Patches do not change a message's id or account, so they only need to reach the MessageCache.
+ *
+ * Getters are named so that Jackson can serialize the cache's statistics directly.
+ */
+public class TimelineCache {
+    private final Cache<Integer, Timeline> cache;
+    private final IntFunction<List<Message>> loader;
+    private final PageLoader pageLoader;
+    private final MessageCache messageCache;
+    private final int maxPerAccount;
+
+    /**
+     * @param loader loads all the messages of an account from the database by its account_id.
+     * @param pageLoader loads one page of the messages of an account from the database, in message_id order.
+     * @param messageCache the cache the messages of a timeline are looked up in.
+     * @param maxPerAccount the maximum number of message_ids kept for one account.
+     * @param maxIds the maximum number of message_ids kept across all accounts.
+     * @param idleSeconds how long a timeline stays cached without being read.
+     */
+    public TimelineCache(IntFunction<List<Message>> loader, PageLoader pageLoader, MessageCache messageCache,
+            int maxPerAccount, long maxIds, long idleSeconds) {
+        this.loader = loader;
+        this.pageLoader = pageLoader;
+        this.messageCache = messageCache;
+        this.maxPerAccount = Math.max(1, maxPerAccount);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxIds)
+                .weigher((Integer accountId, Timeline timeline) -> timeline.ids.length + 1)
+                .expireAfterAccess(idleSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param accountId the identification number of an account.
+     * @return all the messages of the account in message_id order. The most recent maxPerAccount come from the
+     * cache where possible; any older ones are read from the database.
+     */
+    public List<Message> get(int accountId) {
+        Timeline timeline = cache.getIfPresent(accountId);
+        if (timeline != null) {
+            List<Message> messages = read(accountId, timeline);
+            if (messages != null) {
+                return messages;
+            }
+            // A message fell out of the MessageCache; reload the timeline so its messages are cached again.
+            cache.invalidate(accountId);
+        }
+        // Loading inside the cache's compute means messageAdded and messageDeleted wait for the new timeline.
+        List<List<Message>> loaded = new ArrayList<>(1);
+        Timeline built = cache.get(accountId, key -> {
+            List<Message> messages = load(key);
+            loaded.add(messages);
+            return timelineOf(messages);
+        });
+        if (!loaded.isEmpty()) {
+            return loaded.get(0);
+        }
+        // Another reader built the timeline first.
+        List<Message> messages = read(accountId, built);
+        return messages != null ? messages : load(accountId);
+    }
+
+    /**
+     * Add a new message to the timeline of its account, if that timeline is cached.
+     * @param message the persisted message.
+     */
+    public void messageAdded(Message message) {
+        cache.asMap().computeIfPresent(message.getPosted_by(),
+                (accountId, timeline) -> timeline.with(message.getMessage_id(), maxPerAccount));
+    }
+
+    /**
+     * Remove a deleted message from the timeline of its account, if that timeline is cached.
+     * @param message the message as it was before it was deleted.
+     */
+    public void messageDeleted(Message message) {
+        cache.asMap().computeIfPresent(message.getPosted_by(),
+                (accountId, timeline) -> timeline.without(message.getMessage_id()));
+    }
+
+    /**
+     * @return the estimated number of cached timelines.
+     */
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return the number of message_ids held across all cached timelines.
+     */
+    public long getIds() {
+        long ids = 0;
+        for (Timeline timeline : cache.asMap().values()) {
+            ids += timeline.ids.length;
+        }
+        return ids;
+    }
+
+    /**
+     * @return the fraction of timeline lookups that were served from the cache.
+     */
+    public double getHitRatio() {
+        return cache.stats().hitRate();
+    }
+
+    /**
+     * @return the number of timelines evicted for size or idleness.
+     */
+    public long getEvictions() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * @return all the messages of an account from the database, in message_id order.
+     */
+    private List<Message> load(int accountId) {
+        List<Message> messages = new ArrayList<>(loader.apply(accountId));
+        messages.sort(Comparator.comparingInt(Message::getMessage_id));
+        return messages;
+    }
+
+    /**
+     * @return the messages of a timeline, with the older messages of an incomplete one read from the database, or
+     * null if one of the timeline's messages is no longer in the MessageCache.
+     */
+    private List<Message> read(int accountId, Timeline timeline) {
+        List<Message> recent = lookUp(timeline);
+        if (recent == null || timeline.complete || timeline.ids.length == 0) {
+            return recent;
+        }
+        List<Message> messages = older(accountId, timeline.ids[0]);
+        messages.addAll(recent);
+        return messages;
+    }
+
+    /**
+     * Cache the most recent maxPerAccount of an account's messages and build their timeline.
+     * @param messages all the messages of the account, in message_id order.
+     */
+    private Timeline timelineOf(List<Message> messages) {
+        int from = Math.max(0, messages.size() - maxPerAccount);
+        int[] ids = new int[messages.size() - from];
+        for (int i = from; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            messageCache.put(message);
+            ids[i - from] = message.getMessage_id();
+        }
+        return new Timeline(ids, from == 0);
+    }
+
+    /**
+     * @return the cached messages of a timeline, or null if one of them is no longer in the MessageCache.
+     */
+    private List<Message> lookUp(Timeline timeline) {
+        List<Message> messages = new ArrayList<>(timeline.ids.length);
+        for (int messageId : timeline.ids) {
+            Message message = messageCache.getIfPresent(messageId);
+            if (message == null) {
+                return null;
+            }
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * Read the messages of an account that are older than its timeline, maxPerAccount at a time.
+     * @return the account's messages with a message_id below beforeId, in message_id order.
+     */
+    private List<Message> older(int accountId, int beforeId) {
+        List<Message> messages = new ArrayList<>();
+        int afterId = 0;
+        while (true) {
+            List<Message> page = pageLoader.load(accountId, afterId, maxPerAccount);
+            for (Message message : page) {
+                if (message.getMessage_id() >= beforeId) {
+                    return messages;
+                }
+                messages.add(message);
+                afterId = message.getMessage_id();
+            }
+            if (page.size() < maxPerAccount) {
+                return messages;
+            }
+        }
+    }
+
+    /**
+     * Loads one page of the messages of an account, eg MessageStore.findUserMessagesAfter.
+     */
+    public interface PageLoader {
+        /**
+         * @param accountId the posted_by/account_id of the messages.
+         * @param afterId only messages with a greater message_id are returned, 0 to start from the beginning.
+         * @param limit the maximum number of messages to return.
+         * @return up to limit messages of the account with message_id greater than afterId, in message_id order.
+         */
+        List<Message> load(int accountId, int afterId, int limit);
+    }
+
+    /**
+     * The message_ids of one account in ascending order. Timelines are never changed once built; an update makes a
+     * copy, so readers can walk the array without locking.
+     */
+    private static class Timeline {
+        private final int[] ids;
+        private final boolean complete;
+
+        Timeline(int[] ids, boolean complete) {
+            this.ids = ids;
+            this.complete = complete;
+        }
+
+        Timeline with(int messageId, int maxPerAccount) {
+            int position = Arrays.binarySearch(ids, messageId);
+            if (position >= 0) {
+                // The load that built this timeline already saw the message.
+                return this;
+            }
+            int insertAt = -position - 1;
+            int[] added = new int[ids.length + 1];
+            System.arraycopy(ids, 0, added, 0, insertAt);
+            added[insertAt] = messageId;
+            System.arraycopy(ids, insertAt, added, insertAt + 1, ids.length - insertAt);
+            if (added.length <= maxPerAccount) {
+                return new Timeline(added, complete);
+            }
+            return new Timeline(Arrays.copyOfRange(added, added.length - maxPerAccount, added.length), false);
+        }
+
+        Timeline without(int messageId) {
+            int position = Arrays.binarySearch(ids, messageId);
+            if (position < 0) {
+                return this;
+            }
+            int[] removed = new int[ids.length - 1];
+            System.arraycopy(ids, 0, removed, 0, position);
+            System.arraycopy(ids, position + 1, removed, position, ids.length - position - 1);
+            return new Timeline(removed, complete);
+        }
+    }
+}
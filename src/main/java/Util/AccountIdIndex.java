@@ -0,0 +1,147 @@
+package Util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The AccountIdIndex class is an in-memory index of which account_ids exist, so that the posted_by of a new message
+ * can be checked without a round-trip to the database. Account ids are dense auto-increment integers, so the index
+ * is a bitset with one bit per id.
+ *
+ * Lookups are lock-free. Adds are rare (one per registration) and take a lock, so that growing the bitset can not
+ * lose a concurrent add. Getters are named so that Jackson can serialize the index's statistics directly.
+ *
+ * The index is only ever ahead of the database by accounts that were removed outside the application, which the
+ * foreign key on posted_by still rejects. It can be behind by an account registered by another process; in strict
+ * mode a miss is therefore re-checked against the database, while in relaxed mode a miss is trusted.
+ */
+public class AccountIdIndex {
+	/**
+	 * Every account_id.
+	 */
+	public static final String ALL_ACCOUNT_IDS_SQL = "SELECT account_id FROM account;";
+
+	private volatile AtomicLongArray words = new AtomicLongArray(1);
+	private final boolean strict;
+	private final LongAdder size = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param strict true if a miss must be re-checked against the database before an account is taken to be unknown.
+	 */
+	public AccountIdIndex(boolean strict) {
+		this.strict = strict;
+	}
+
+	/**
+	 * Replace the contents of the index with the account_ids in the database.
+	 * @param connection the connection to read the account table with.
+	 * @throws SQLException if the account table could not be read.
+	 */
+	public synchronized void load(Connection connection) throws SQLException {
+		AtomicLongArray loaded = new AtomicLongArray(1);
+		long count = 0;
+		try (PreparedStatement preparedStatement = connection.prepareStatement(ALL_ACCOUNT_IDS_SQL);
+				ResultSet rs = preparedStatement.executeQuery()) {
+			while (rs.next()) {
+				int accountId = rs.getInt(1);
+				loaded = ensureCapacity(loaded, accountId);
+				long mask = 1L << accountId;
+				if ((loaded.get(accountId >>> 6) & mask) == 0) {
+					loaded.set(accountId >>> 6, loaded.get(accountId >>> 6) | mask);
+					count++;
+				}
+			}
+		}
+		words = loaded;
+		size.reset();
+		size.add(count);
+	}
+
+	/**
+	 * @param accountId an account_id.
+	 * @return true if the account is known to exist.
+	 */
+	public boolean contains(int accountId) {
+		boolean found = isSet(accountId);
+		if (found) {
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+		return found;
+	}
+
+	/**
+	 * Record that an account exists.
+	 * @param accountId the account_id of a persisted account.
+	 */
+	public void add(int accountId) {
+		if (accountId < 0 || isSet(accountId)) {
+			return;
+		}
+		synchronized (this) {
+			AtomicLongArray current = ensureCapacity(words, accountId);
+			long previous = current.getAndUpdate(accountId >>> 6, word -> word | (1L << accountId));
+			words = current;
+			if ((previous & (1L << accountId)) == 0) {
+				size.increment();
+			}
+		}
+	}
+
+	/**
+	 * @return true if a miss must be re-checked against the database.
+	 */
+	public boolean isStrict() {
+		return strict;
+	}
+
+	/**
+	 * @return the number of account_ids in the index.
+	 */
+	public long getSize() {
+		return size.sum();
+	}
+
+	/**
+	 * @return the number of lookups that found the account.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of lookups that did not find the account.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	private boolean isSet(int accountId) {
+		if (accountId < 0) {
+			return false;
+		}
+		AtomicLongArray current = words;
+		int word = accountId >>> 6;
+		return word < current.length() && (current.get(word) & (1L << accountId)) != 0;
+	}
+
+	private static AtomicLongArray ensureCapacity(AtomicLongArray current, int accountId) {
+		int word = accountId >>> 6;
+		if (word < current.length()) {
+			return current;
+		}
+		// Double the bitset, so a run of new accounts grows it a logarithmic number of times.
+		AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, current.length() * 2));
+		for (int i = 0; i < current.length(); i++) {
+			grown.set(i, current.get(i));
+		}
+		return grown;
+	}
+}
@@ -0,0 +1,97 @@
+package Util;
+
+/**
+ * The AppConfig class is a small helper for reading the tunable settings of the application. Every setting is read
+ * from a JVM system property prefixed with "socialmedia." (eg -Dsocialmedia.db.pool.maxSize=20), and falls back to
+ * the given default when the property is missing or cannot be parsed.
+ */
+public class AppConfig {
+
+	/**
+	 * Prefix shared by every system property read by this class.
+	 */
+	public static final String PREFIX = "socialmedia.";
+
+	private AppConfig() {
+	}
+
+	/**
+	 * @param key the name of the setting, without the prefix.
+	 * @param defaultValue the value to use when the setting is not configured.
+	 * @return the configured String value of the setting.
+	 */
+	public static String getString(String key, String defaultValue) {
+		String value = System.getProperty(PREFIX + key);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		return value.trim();
+	}
+
+	/**
+	 * @param key the name of the setting, without the prefix.
+	 * @param defaultValue the value to use when the setting is not configured.
+	 * @return the configured int value of the setting.
+	 */
+	public static int getInt(String key, int defaultValue) {
+		String value = getString(key, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			System.out.println("Ignoring invalid value for " + PREFIX + key + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @param key the name of the setting, without the prefix.
+	 * @param defaultValue the value to use when the setting is not configured.
+	 * @return the configured long value of the setting.
+	 */
+	public static long getLong(String key, long defaultValue) {
+		String value = getString(key, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			System.out.println("Ignoring invalid value for " + PREFIX + key + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @param key the name of the setting, without the prefix.
+	 * @param defaultValue the value to use when the setting is not configured.
+	 * @return the configured double value of the setting.
+	 */
+	public static double getDouble(String key, double defaultValue) {
+		String value = getString(key, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			System.out.println("Ignoring invalid value for " + PREFIX + key + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @param key the name of the setting, without the prefix.
+	 * @param defaultValue the value to use when the setting is not configured.
+	 * @return the configured boolean value of the setting.
+	 */
+	public static boolean getBoolean(String key, boolean defaultValue) {
+		String value = getString(key, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		return Boolean.parseBoolean(value);
+	}
+}
@@ -0,0 +1,106 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The BloomFilter class is a fixed-size Bloom filter of strings. mightContain() never gives a false negative for a
+ * string that was added, and gives a false positive for other strings at about the rate the filter was sized for,
+ * as long as no more than expectedInsertions strings are added.
+ *
+ * The filter is sized on construction and can not grow; a caller that outgrows it builds a bigger one. Bits are set
+ * with compare-and-set, so adds and lookups may run concurrently.
+ */
+public class BloomFilter {
+	private final AtomicLongArray bits;
+	private final long bitCount;
+	private final int hashCount;
+	private final int expectedInsertions;
+
+	/**
+	 * @param expectedInsertions the number of strings the filter is sized for.
+	 * @param falsePositiveRate the target rate of false positives once expectedInsertions strings are added.
+	 */
+	public BloomFilter(int expectedInsertions, double falsePositiveRate) {
+		this.expectedInsertions = Math.max(1, expectedInsertions);
+		// The standard sizing: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hash functions.
+		long m = (long) Math.ceil(-this.expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		this.bitCount = Math.max(64, (m + 63) / 64 * 64);
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount / this.expectedInsertions * Math.log(2)));
+		this.bits = new AtomicLongArray((int) (bitCount / 64));
+	}
+
+	/**
+	 * @param value the string to add.
+	 */
+	public void add(String value) {
+		long hash = hash64(value);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < hashCount; i++) {
+			long bit = index(h1, h2, i);
+			int word = (int) (bit >>> 6);
+			long mask = 1L << bit;
+			long current = bits.get(word);
+			while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+				current = bits.get(word);
+			}
+		}
+	}
+
+	/**
+	 * @param value the string to look up.
+	 * @return false if the string was definitely never added, true if it may have been.
+	 */
+	public boolean mightContain(String value) {
+		long hash = hash64(value);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < hashCount; i++) {
+			long bit = index(h1, h2, i);
+			if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of strings the filter is sized for.
+	 */
+	public int getExpectedInsertions() {
+		return expectedInsertions;
+	}
+
+	/**
+	 * @param insertions the number of strings added.
+	 * @return the expected false positive rate after that many strings are added, (1 - e^(-kn/m))^k.
+	 */
+	public double expectedFalsePositiveRate(long insertions) {
+		return Math.pow(1 - Math.exp(-(double) hashCount * insertions / bitCount), hashCount);
+	}
+
+	/**
+	 * The i-th of the k bit positions, from two base hashes (Kirsch and Mitzenmacher's double hashing).
+	 */
+	private long index(int h1, int h2, int i) {
+		int combined = h1 + i * h2;
+		return (combined & Integer.MAX_VALUE) % bitCount;
+	}
+
+	/**
+	 * 64-bit FNV-1a over the chars of the string, finished with the MurmurHash3 mixer so both halves are usable.
+	 */
+	private static long hash64(String value) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
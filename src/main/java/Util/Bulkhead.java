@@ -0,0 +1,146 @@
+package Util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Bulkhead class caps how many callers may be inside a section of code at once. A caller that finds the
+ * bulkhead full waits up to maxWaitMillis for a permit, and is turned away if none is freed in time, so a burst of
+ * callers can not pile up behind a slow resource without bound. At most maxQueued callers wait at once; any more are
+ * turned away straight away.
+ *
+ * Waiting parks on a fair Semaphore, which suits virtual threads as well as platform threads. Getters are named so
+ * that Jackson can serialize the bulkhead's counters directly.
+ */
+public class Bulkhead {
+	private final String name;
+	private final int maxConcurrent;
+	private final int maxQueued;
+	private final long maxWaitMillis;
+	private final Semaphore permits;
+
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final LongAdder admitted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * @param name the name of the bulkhead, used in messages.
+	 * @param maxConcurrent the maximum number of callers inside at once.
+	 * @param maxWaitMillis how long a caller waits for a permit, 0 to fail straight away when full.
+	 */
+	public Bulkhead(String name, int maxConcurrent, long maxWaitMillis) {
+		this(name, maxConcurrent, Integer.MAX_VALUE, maxWaitMillis);
+	}
+
+	/**
+	 * @param name the name of the bulkhead, used in messages.
+	 * @param maxConcurrent the maximum number of callers inside at once.
+	 * @param maxQueued the maximum number of callers waiting for a permit at once.
+	 * @param maxWaitMillis how long a caller waits for a permit, 0 to fail straight away when full.
+	 */
+	public Bulkhead(String name, int maxConcurrent, int maxQueued, long maxWaitMillis) {
+		if (maxConcurrent < 1) {
+			throw new IllegalArgumentException("maxConcurrent must be at least 1");
+		}
+		this.name = name;
+		this.maxConcurrent = maxConcurrent;
+		this.maxQueued = Math.max(0, maxQueued);
+		this.maxWaitMillis = Math.max(0, maxWaitMillis);
+		this.permits = new Semaphore(maxConcurrent, true);
+	}
+
+	/**
+	 * Enter the bulkhead. Every successful call must be matched by a call to release().
+	 * @return true if the caller may go in, false if the bulkhead stayed full for maxWaitMillis.
+	 */
+	public boolean tryAcquire() {
+		if (permits.tryAcquire()) {
+			admitted.increment();
+			return true;
+		}
+		if (maxWaitMillis > 0 && maxQueued > 0) {
+			if (waiting.incrementAndGet() > maxQueued) {
+				waiting.decrementAndGet();
+				rejected.increment();
+				return false;
+			}
+			try {
+				if (permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+					admitted.increment();
+					return true;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				waiting.decrementAndGet();
+			}
+		}
+		rejected.increment();
+		return false;
+	}
+
+	/**
+	 * Leave the bulkhead, freeing a permit for the next caller.
+	 */
+	public void release() {
+		permits.release();
+	}
+
+	/**
+	 * @return the name of the bulkhead.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the maximum number of callers inside at once.
+	 */
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	/**
+	 * @return the maximum number of callers waiting for a permit at once.
+	 */
+	public int getMaxQueued() {
+		return maxQueued;
+	}
+
+	/**
+	 * @return the number of callers inside now.
+	 */
+	public int getActive() {
+		return maxConcurrent - permits.availablePermits();
+	}
+
+	/**
+	 * @return the fraction of the permits in use now.
+	 */
+	public double getOccupancy() {
+		return (double) getActive() / maxConcurrent;
+	}
+
+	/**
+	 * @return the number of callers waiting for a permit now.
+	 */
+	public int getWaiting() {
+		return waiting.get();
+	}
+
+	/**
+	 * @return the number of callers let in.
+	 */
+	public long getAdmitted() {
+		return admitted.sum();
+	}
+
+	/**
+	 * @return the number of callers turned away.
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+}
@@ -0,0 +1,97 @@
+package Util;
+
+import Model.Message;
+import Model.MessageChange;
+import Model.MessageChanges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * The ChangeLog class is a bounded, in-memory record of the writes to the messages, for the storage backends that
+ * have no change table. It is a ring buffer: once it is full, each new change overwrites the oldest one.
+ *
+ * Versions are consecutive, so a change is found from its version alone, and only the message_id and type of each
+ * change are kept. Numbering starts from the clock, in microseconds, rather than from 0. A version from an
+ * earlier run of the process is then older than anything retained, and is reported as lost rather than being read
+ * as a position in this run's changes.
+ */
+public class ChangeLog {
+	private final int[] messageIds;
+	private final String[] types;
+	private final long base;
+	/**
+	 * The version of the newest change, or base if there is none.
+	 */
+	private long last;
+
+	/**
+	 * @param capacity the number of changes retained.
+	 */
+	public ChangeLog(int capacity) {
+		int size = Math.max(1, capacity);
+		this.messageIds = new int[size];
+		this.types = new String[size];
+		this.base = System.currentTimeMillis() * 1000;
+		this.last = base;
+	}
+
+	/**
+	 * Record a change. Called after the change is made, so a reader that sees the version also sees the change.
+	 * @param type one of MessageChange.CREATED, UPDATED or DELETED.
+	 * @param messageId the message_id of the changed message.
+	 * @return the version of the change.
+	 */
+	public synchronized long record(String type, int messageId) {
+		last++;
+		int slot = (int) (last % messageIds.length);
+		messageIds[slot] = messageId;
+		types[slot] = type;
+		return last;
+	}
+
+	/**
+	 * @return the version of the newest change.
+	 */
+	public synchronized long getVersion() {
+		return last;
+	}
+
+	/**
+	 * @param sinceVersion the version the reader has caught up to.
+	 * @param limit the maximum number of changes to return.
+	 * @param loader looks up the current state of a message by message_id, or returns null if it is gone.
+	 * @return up to limit changes after sinceVersion, in version order, or null if some of them were overwritten
+	 * or sinceVersion was never handed out. A created or updated message that is gone by now is left out, since its
+	 * deletion follows.
+	 */
+	public MessageChanges since(long sinceVersion, int limit, IntFunction<Message> loader) {
+		List<MessageChange> recorded = new ArrayList<>();
+		long newest;
+		synchronized (this) {
+			newest = last;
+			long oldest = Math.max(base, last - messageIds.length);
+			if (sinceVersion < oldest || sinceVersion > last) {
+				return null;
+			}
+			for (long version = sinceVersion + 1; version <= last && recorded.size() < limit; version++) {
+				int slot = (int) (version % messageIds.length);
+				recorded.add(new MessageChange(version, types[slot], messageIds[slot], null));
+			}
+		}
+		List<MessageChange> changes = new ArrayList<>(recorded.size());
+		long version = sinceVersion;
+		for (MessageChange change : recorded) {
+			version = change.getVersion();
+			if (!MessageChange.DELETED.equals(change.getChange_type())) {
+				change.setMessage(loader.apply(change.getMessage_id()));
+				if (change.getMessage() == null) {
+					continue;
+				}
+			}
+			changes.add(change);
+		}
+		return new MessageChanges(changes, version, version < newest);
+	}
+}
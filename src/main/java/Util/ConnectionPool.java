@@ -0,0 +1,392 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The ConnectionPool class keeps a bounded set of physical connections to the database and hands them out to callers.
+ * Connections handed out by getConnection() are proxies: calling close() on them returns the physical connection to
+ * the pool instead of closing it.
+ *
+ * - At most maxSize connections are ever borrowed at once. Callers beyond that wait up to acquireTimeoutMillis for a
+ * connection to be returned, and then fail with a SQLTransientConnectionException.
+ * - Idle connections that have not been used for idleTimeoutMillis are closed by a background housekeeper, down to
+ * minIdle connections.
+ * - When leakDetectionThresholdMillis is above zero, a connection that stays borrowed longer than the threshold is
+ * logged along with the stack trace of the code that borrowed it.
+ * - Each connection keeps up to statementCacheSize prepared statements open in a StatementCache, so the constant SQL
+ * of the DAOs is parsed and planned once per physical connection instead of once per call.
+ * - An optional call gate, a Bulkhead in front of the pool, caps the number of callers using or waiting for a
+ * connection. It keeps the number of concurrent JDBC calls bounded separately from the pool size, and turns callers
+ * away early when request threads are cheap (eg virtual threads) and far outnumber the connections.
+ */
+public class ConnectionPool {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+	private final DataSource dataSource;
+	private final int maxSize;
+	private final int minIdle;
+	private final long acquireTimeoutMillis;
+	private final long idleTimeoutMillis;
+	private final long leakDetectionThresholdMillis;
+	private final int statementCacheSize;
+	private final Bulkhead callGate;
+
+	/**
+	 * One permit per connection that may be borrowed. Fair, so waiters are served in arrival order.
+	 */
+	private final Semaphore permits;
+	/**
+	 * Connections ready to be borrowed. Used as a stack so the most recently returned (warmest) connection is reused
+	 * first and the cold ones at the bottom age out.
+	 */
+	private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+	private final Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService housekeeper;
+
+	private final AtomicInteger waiters = new AtomicInteger();
+	private final LongAdder acquired = new LongAdder();
+	private final LongAdder acquireNanos = new LongAdder();
+	private final AtomicLong maxAcquireNanos = new AtomicLong();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder created = new LongAdder();
+	private final LongAdder evicted = new LongAdder();
+	private final LongAdder leaks = new LongAdder();
+	private final LongAdder statementHits = new LongAdder();
+	private final LongAdder statementMisses = new LongAdder();
+	private final LongAdder statementEvictions = new LongAdder();
+
+	/**
+	 * @param dataSource the source of physical connections.
+	 * @param maxSize the maximum number of connections that may be borrowed at once.
+	 * @param minIdle the number of idle connections the housekeeper keeps open.
+	 * @param acquireTimeoutMillis how long getConnection() waits for a free connection.
+	 * @param idleTimeoutMillis how long a connection may sit idle before it is closed.
+	 * @param leakDetectionThresholdMillis how long a connection may be borrowed before it is reported, 0 to disable.
+	 * @param statementCacheSize how many prepared statements each connection keeps open, 0 to disable.
+	 */
+	public ConnectionPool(DataSource dataSource, int maxSize, int minIdle, long acquireTimeoutMillis,
+			long idleTimeoutMillis, long leakDetectionThresholdMillis, int statementCacheSize) {
+		this(dataSource, maxSize, minIdle, acquireTimeoutMillis, idleTimeoutMillis, leakDetectionThresholdMillis,
+				statementCacheSize, null);
+	}
+
+	/**
+	 * @param dataSource the source of physical connections.
+	 * @param maxSize the maximum number of connections that may be borrowed at once.
+	 * @param minIdle the number of idle connections the housekeeper keeps open.
+	 * @param acquireTimeoutMillis how long getConnection() waits for a free connection.
+	 * @param idleTimeoutMillis how long a connection may sit idle before it is closed.
+	 * @param leakDetectionThresholdMillis how long a connection may be borrowed before it is reported, 0 to disable.
+	 * @param statementCacheSize how many prepared statements each connection keeps open, 0 to disable.
+	 * @param callGate the bulkhead a caller must enter before borrowing a connection, or null for none.
+	 */
+	public ConnectionPool(DataSource dataSource, int maxSize, int minIdle, long acquireTimeoutMillis,
+			long idleTimeoutMillis, long leakDetectionThresholdMillis, int statementCacheSize, Bulkhead callGate) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be at least 1");
+		}
+		this.dataSource = dataSource;
+		this.maxSize = maxSize;
+		this.minIdle = Math.min(Math.max(minIdle, 0), maxSize);
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+		this.statementCacheSize = statementCacheSize;
+		this.callGate = callGate;
+		this.permits = new Semaphore(maxSize, true);
+
+		this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = housekeepingPeriodMillis();
+		housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Borrow a connection from the pool, opening a new physical connection if no idle one is available.
+	 * @return a connection that must be closed by the caller to return it to the pool.
+	 * @throws SQLException if the call gate turned the caller away, or no connection became available within the
+	 * acquire timeout.
+	 */
+	public Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
+		if (callGate != null && !callGate.tryAcquire()) {
+			rejected.increment();
+			throw new SQLTransientConnectionException("Too many concurrent database calls (max="
+					+ callGate.getMaxConcurrent() + ")");
+		}
+		waiters.incrementAndGet();
+		try {
+			if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				timeouts.increment();
+				releaseCallGate();
+				throw new SQLTransientConnectionException("Timed out after " + acquireTimeoutMillis
+						+ "ms waiting for a connection (active=" + active.size() + ", max=" + maxSize + ")");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			releaseCallGate();
+			throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+		} finally {
+			waiters.decrementAndGet();
+		}
+
+		try {
+			PooledConnection pooled = takeIdle();
+			if (pooled == null) {
+				pooled = new PooledConnection(dataSource.getConnection());
+				created.increment();
+			}
+			pooled.borrow(leakDetectionThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null);
+			active.add(pooled);
+
+			long elapsed = System.nanoTime() - start;
+			acquired.increment();
+			acquireNanos.add(elapsed);
+			maxAcquireNanos.accumulateAndGet(elapsed, Math::max);
+			return pooled.proxy;
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			releaseCallGate();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return a snapshot of the pool's counters.
+	 */
+	public PoolStats getStats() {
+		long count = acquired.sum();
+		return new PoolStats(active.size(), idle.size(), waiters.get(), maxSize, count, timeouts.sum(),
+				rejected.sum(), count == 0 ? 0 : acquireNanos.sum() / count / 1000, maxAcquireNanos.get() / 1000,
+				created.sum(), evicted.sum(), leaks.sum(), statementHits.sum(), statementMisses.sum(),
+				statementEvictions.sum());
+	}
+
+	/**
+	 * Close every idle connection and stop the housekeeper. Borrowed connections are closed when they are returned.
+	 */
+	public void shutdown() {
+		housekeeper.shutdownNow();
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			pooled.closePhysical();
+		}
+	}
+
+	private PooledConnection takeIdle() {
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			if (pooled.isUsable()) {
+				return pooled;
+			}
+			pooled.closePhysical();
+			evicted.increment();
+		}
+		return null;
+	}
+
+	private void release(PooledConnection pooled) {
+		active.remove(pooled);
+		try {
+			if (pooled.resetForReuse()) {
+				idle.offerFirst(pooled);
+			} else {
+				pooled.closePhysical();
+				evicted.increment();
+			}
+		} finally {
+			permits.release();
+			releaseCallGate();
+		}
+	}
+
+	private void releaseCallGate() {
+		if (callGate != null) {
+			callGate.release();
+		}
+	}
+
+	private long housekeepingPeriodMillis() {
+		long period = Math.min(idleTimeoutMillis, 30_000);
+		if (leakDetectionThresholdMillis > 0) {
+			period = Math.min(period, leakDetectionThresholdMillis);
+		}
+		return Math.max(period / 2, 100);
+	}
+
+	private void housekeep() {
+		long now = System.currentTimeMillis();
+		try {
+			// The coldest connections sit at the tail of the idle stack.
+			int surplus = idle.size() - minIdle;
+			Iterator<PooledConnection> coldest = idle.descendingIterator();
+			while (surplus > 0 && coldest.hasNext()) {
+				PooledConnection pooled = coldest.next();
+				if (now - pooled.lastReturnedMillis >= idleTimeoutMillis && idle.remove(pooled)) {
+					pooled.closePhysical();
+					evicted.increment();
+					surplus--;
+				}
+			}
+
+			if (leakDetectionThresholdMillis > 0) {
+				for (PooledConnection pooled : active) {
+					Throwable borrowSite = pooled.borrowSite;
+					if (borrowSite != null && !pooled.leakReported
+							&& now - pooled.borrowedAtMillis >= leakDetectionThresholdMillis) {
+						pooled.leakReported = true;
+						leaks.increment();
+						LOGGER.warn("Connection has been borrowed for {}ms without being closed, possible leak",
+								now - pooled.borrowedAtMillis, borrowSite);
+					}
+				}
+			}
+		} catch (RuntimeException e) {
+			LOGGER.warn("Connection pool housekeeping failed", e);
+		}
+	}
+
+	/**
+	 * A physical connection owned by the pool, together with the proxy handed out to borrowers.
+	 */
+	private class PooledConnection implements InvocationHandler {
+		private final Connection physical;
+		private final Connection proxy;
+		private final StatementCache statementCache;
+		private volatile boolean borrowed;
+		private volatile long borrowedAtMillis;
+		private volatile long lastReturnedMillis = System.currentTimeMillis();
+		private volatile Throwable borrowSite;
+		private volatile boolean leakReported;
+
+		PooledConnection(Connection physical) {
+			this.physical = physical;
+			this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, this);
+			this.statementCache = new StatementCache(physical, proxy, statementCacheSize, statementHits,
+					statementMisses, statementEvictions);
+		}
+
+		void borrow(Throwable borrowSite) {
+			this.borrowed = true;
+			this.borrowedAtMillis = System.currentTimeMillis();
+			this.borrowSite = borrowSite;
+			this.leakReported = false;
+		}
+
+		boolean isUsable() {
+			try {
+				return !physical.isClosed();
+			} catch (SQLException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * Undo anything a borrower may have left behind so the next borrower gets a clean connection.
+		 * @return false if the connection is no longer usable and should be discarded.
+		 */
+		boolean resetForReuse() {
+			try {
+				if (physical.isClosed()) {
+					return false;
+				}
+				statementCache.reclaim();
+				if (!physical.getAutoCommit()) {
+					physical.rollback();
+					physical.setAutoCommit(true);
+				}
+				physical.clearWarnings();
+				lastReturnedMillis = System.currentTimeMillis();
+				return true;
+			} catch (SQLException e) {
+				return false;
+			}
+		}
+
+		void closePhysical() {
+			statementCache.closeAll();
+			try {
+				physical.close();
+			} catch (SQLException e) {
+				LOGGER.debug("Failed to close pooled connection", e);
+			}
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					if (borrowed) {
+						borrowed = false;
+						borrowSite = null;
+						release(this);
+					}
+					return null;
+				case "isClosed":
+					return !borrowed || physical.isClosed();
+				case "prepareStatement":
+					if (borrowed && args.length == 1) {
+						return statementCache.prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+					}
+					if (borrowed && args.length == 2 && args[1] instanceof Integer) {
+						return statementCache.prepare((String) args[0], (Integer) args[1]);
+					}
+					break;
+				case "unwrap":
+					if (((Class<?>) args[0]).isInstance(proxy)) {
+						return proxy;
+					}
+					break;
+				case "isWrapperFor":
+					if (((Class<?>) args[0]).isInstance(proxy)) {
+						return true;
+					}
+					break;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Pooled" + physical;
+				default:
+					break;
+			}
+			if (!borrowed) {
+				throw new SQLException("Connection has already been returned to the pool");
+			}
+			try {
+				return method.invoke(physical, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
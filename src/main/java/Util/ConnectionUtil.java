@@ -1,9 +1,10 @@
 package Util;
 
-import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 import org.h2.jdbcx.JdbcDataSource;
 import org.h2.tools.RunScript;
@@ -13,7 +14,8 @@ import org.h2.tools.RunScript;
  * our database. This class utilizes the singleton design pattern. We will be
  * utilizing an in-memory called h2database for the sql demos.
  *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
+ * Connections are borrowed from a bounded ConnectionPool, so every caller must
+ * close the connection it gets (eg with try-with-resources) to return it.
  */
 public class ConnectionUtil {
 
@@ -32,21 +34,67 @@ public class ConnectionUtil {
 	private static String password = "sa";
 
 	/**
-	 * DataSource for pooling. Pooling enables the creation of multiple connections when connections are closed.
+	 * DataSource for the physical connections handed out by the pool.
 	 */
-	private static JdbcDataSource pool = new JdbcDataSource();
+	private static JdbcDataSource dataSource = new JdbcDataSource();
+
+	/**
+	 * Bounded pool of connections. The sizing and timeouts can be tuned with the
+	 * socialmedia.db.pool.* system properties.
+	 */
+	private static ConnectionPool pool;
+
+	/**
+	 * Bulkhead in front of the pool capping the callers using or waiting for a
+	 * connection, sized by socialmedia.db.maxConcurrentCalls (by default twice the
+	 * pool size) and waiting up to db.callGateWaitMillis for a permit.
+	 */
+	private static Bulkhead callGate;
+
+	/**
+	 * Index of the existing account_ids, loaded once the schema is up to date. A
+	 * miss is re-checked against the database unless
+	 * socialmedia.accountIndex.consistency is "relaxed".
+	 */
+	private static AccountIdIndex accountIndex = new AccountIdIndex(
+			!"relaxed".equalsIgnoreCase(AppConfig.getString("accountIndex.consistency", "strict")));
+
+	/**
+	 * Index of the registered usernames, loaded with the account index. Its Bloom
+	 * filter is first sized for socialmedia.usernameIndex.expectedSize usernames,
+	 * at a false positive rate of usernameIndex.falsePositiveRate, and a miss is
+	 * re-checked against the database unless usernameIndex.consistency is
+	 * "relaxed".
+	 */
+	private static UsernameIndex usernameIndex = new UsernameIndex(
+			AppConfig.getInt("usernameIndex.expectedSize", 1024),
+			AppConfig.getDouble("usernameIndex.falsePositiveRate", 0.01),
+			!"relaxed".equalsIgnoreCase(AppConfig.getString("usernameIndex.consistency", "strict")));
 
 	/**
 	 * static initialization block to establish credentials for DataSoure Pool
 	 */
 	static {
-		pool.setURL(url);
-		pool.setUser(username);
-		pool.setPassword(password);
+		dataSource.setURL(url);
+		dataSource.setUser(username);
+		dataSource.setPassword(password);
+		int maxPoolSize = AppConfig.getInt("db.pool.maxSize", 10);
+		callGate = new Bulkhead("db",
+				AppConfig.getInt("db.maxConcurrentCalls", maxPoolSize * 2),
+				AppConfig.getLong("db.callGateWaitMillis", 5000));
+		pool = new ConnectionPool(dataSource,
+				maxPoolSize,
+				AppConfig.getInt("db.pool.minIdle", 2),
+				AppConfig.getLong("db.pool.acquireTimeoutMillis", 5000),
+				AppConfig.getLong("db.pool.idleTimeoutMillis", 600000),
+				AppConfig.getLong("db.pool.leakDetectionThresholdMillis", 30000),
+				AppConfig.getInt("db.pool.statementCacheSize", 32),
+				callGate);
+		migrate();
 	}
 
 	/**
-	 * @return an active connection to the database
+	 * @return an active connection to the database, which must be closed to return it to the pool
 	 */
 	public static Connection getConnection() {
 		try {
@@ -58,16 +106,70 @@ public class ConnectionUtil {
 		return null;
 	}
 
+	/**
+	 * @return a snapshot of the connection pool counters
+	 */
+	public static PoolStats getPoolStats() {
+		return pool.getStats();
+	}
+
+	/**
+	 * @return the bulkhead in front of the connection pool
+	 */
+	public static Bulkhead getCallGate() {
+		return callGate;
+	}
+
+	/**
+	 * @return the index of the existing account_ids
+	 */
+	public static AccountIdIndex getAccountIndex() {
+		return accountIndex;
+	}
+
+	/**
+	 * @return the index of the registered usernames
+	 */
+	public static UsernameIndex getUsernameIndex() {
+		return usernameIndex;
+	}
+
+	/**
+	 * Bring the database schema up to date by applying any pending migrations,
+	 * then load the account and username indexes. This runs once, when the class
+	 * is first used.
+	 */
+	private static void migrate() {
+		try (Connection connection = pool.getConnection()) {
+			MigrationRunner.migrate(connection);
+			accountIndex.load(connection);
+			usernameIndex.load(connection);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * For the purpose of testing, we will need to drop and recreate our database
-	 * tables to keep it consistent across all tests. The method will read the sql
-	 * file in resources. This will be performed before every test.
+	 * tables to keep it consistent across all tests. The method drops everything,
+	 * recreates the schema with the migrations and then reads the seed data sql
+	 * file in resources, and reloads the account and username indexes, message
+	 * versions and, if it is open or selected as the storage engine, the message
+	 * log to match. This will be performed before every test.
 	 */
 	public static void resetTestDatabase() {
-		try {
-			FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-			RunScript.execute(getConnection(), sqlReader);
-		} catch (SQLException | FileNotFoundException e) {
+		try (Connection connection = getConnection();
+				FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql")) {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("DROP ALL OBJECTS");
+			}
+			MigrationRunner.migrate(connection);
+			RunScript.execute(connection, sqlReader);
+			accountIndex.load(connection);
+			usernameIndex.load(connection);
+			MessageVersions.reset();
+			MessageLog.reloadShared(connection);
+		} catch (SQLException | IOException e) {
 			e.printStackTrace();
 		}
 	}
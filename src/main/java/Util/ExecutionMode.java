@@ -0,0 +1,66 @@
+package Util;
+
+import io.javalin.util.LoomThreadPool;
+import io.javalin.util.LoomUtil;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * The ExecutionMode enum selects the threads the Javalin server handles requests on.
+ *
+ * - PLATFORM runs requests on a bounded pool of platform threads, sized by socialmedia.server.maxThreads. A request
+ * blocked on JDBC holds its thread, so the pool size caps the requests in progress.
+ * - VIRTUAL runs every request on its own virtual thread, so blocked requests cost little and the database, guarded
+ * by the call gate in ConnectionUtil, becomes the limit instead. Virtual threads need a JVM that has them (Java 21,
+ * or 19 and 20 with --enable-preview); on an older JVM the server falls back to PLATFORM.
+ */
+public enum ExecutionMode {
+	PLATFORM,
+	VIRTUAL;
+
+	private static final String THREAD_POOL_NAME = "JettyServerThreadPool";
+
+	/**
+	 * @return the mode named by socialmedia.server.executionMode, PLATFORM by default.
+	 */
+	public static ExecutionMode fromConfig() {
+		return parse(AppConfig.getString("server.executionMode", PLATFORM.name()));
+	}
+
+	/**
+	 * @param name the name of a mode, in any case.
+	 * @return the named mode, or PLATFORM if the name is not a mode.
+	 */
+	public static ExecutionMode parse(String name) {
+		try {
+			return valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			System.out.println("Unknown execution mode " + name + ", using " + PLATFORM);
+			return PLATFORM;
+		}
+	}
+
+	/**
+	 * @return true if this mode can run on the current JVM.
+	 */
+	public boolean isAvailable() {
+		return this != VIRTUAL || LoomUtil.INSTANCE.getLoomAvailable();
+	}
+
+	/**
+	 * @return a new thread pool for the Jetty server, in this mode if it is available, in PLATFORM mode otherwise.
+	 */
+	public ThreadPool createThreadPool() {
+		if (this == VIRTUAL) {
+			if (isAvailable()) {
+				return new LoomThreadPool(THREAD_POOL_NAME);
+			}
+			System.out.println("Virtual threads are not available on this JVM, using " + PLATFORM);
+		}
+		QueuedThreadPool threadPool = new QueuedThreadPool(AppConfig.getInt("server.maxThreads", 250),
+				AppConfig.getInt("server.minThreads", 8));
+		threadPool.setName(THREAD_POOL_NAME);
+		return threadPool;
+	}
+}
@@ -0,0 +1,139 @@
+package Util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import io.javalin.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The JsonCodec class is the one place JSON is read and written. It holds a single, pre-configured ObjectMapper,
+ * with the Blackbird module so that properties are read and written through generated lambdas rather than
+ * reflection, and hands out an ObjectReader and ObjectWriter per type that are built once and reused, so a request
+ * does not pay for looking up or building serializers.
+ *
+ * An instance is registered as Javalin's JsonMapper, so ctx.json() and ctx.bodyAsClass() use the same mapper.
+ * Handlers that know the type they write can skip the String in between with write(), which encodes straight into
+ * the response output stream.
+ */
+public class JsonCodec implements JsonMapper {
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.registerModule(new BlackbirdModule())
+			// The caller owns the output stream, eg the response, and closes it itself.
+			.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+	private static final Map<Type, ObjectReader> READERS = new ConcurrentHashMap<>();
+	private static final Map<Type, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
+	/**
+	 * @param type the type to read.
+	 * @return the shared reader of the type.
+	 */
+	public static ObjectReader reader(Type type) {
+		return READERS.computeIfAbsent(type, key -> MAPPER.readerFor(javaType(key)));
+	}
+
+	/**
+	 * @param type the generic type to read, eg new TypeReference&lt;List&lt;Message&gt;&gt;(){}.
+	 * @return the shared reader of the type.
+	 */
+	public static ObjectReader reader(TypeReference<?> type) {
+		return reader(type.getType());
+	}
+
+	/**
+	 * @param type the type to write.
+	 * @return the shared writer of the type.
+	 */
+	public static ObjectWriter writer(Type type) {
+		return WRITERS.computeIfAbsent(type, key -> MAPPER.writerFor(javaType(key)));
+	}
+
+	/**
+	 * @param type the generic type to write, eg new TypeReference&lt;List&lt;Message&gt;&gt;(){}.
+	 * @return the shared writer of the type.
+	 */
+	public static ObjectWriter writer(TypeReference<?> type) {
+		return writer(type.getType());
+	}
+
+	/**
+	 * Encode a value straight into an output stream, without building a String first. The stream is left open.
+	 * @param out the stream to write to, eg ctx.outputStream().
+	 * @param writer the writer of the value's type.
+	 * @param value the value to write.
+	 * @throws IOException if the stream could not be written.
+	 */
+	public static void write(OutputStream out, ObjectWriter writer, Object value) throws IOException {
+		writer.writeValue(out, value);
+	}
+
+	/**
+	 * @param out the stream to write to.
+	 * @return a generator for writing a JSON document piece by piece with the shared mapper. The stream is left open
+	 * when the generator is closed.
+	 * @throws IOException if the generator could not be created.
+	 */
+	public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+		return MAPPER.getFactory().createGenerator(out);
+	}
+
+	/**
+	 * Strings are passed through as they are, as Javalin's own mapper does, so ctx.json(String) sends the String.
+	 */
+	@Override
+	public String toJsonString(Object obj, Type type) {
+		if (obj instanceof String) {
+			return (String) obj;
+		}
+		try {
+			return writer(type).writeValueAsString(obj);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public InputStream toJsonStream(Object obj, Type type) {
+		try {
+			return new ByteArrayInputStream(writer(type).writeValueAsBytes(obj));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public <T> T fromJsonString(String json, Type targetType) {
+		try {
+			return reader(targetType).readValue(json);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public <T> T fromJsonStream(InputStream json, Type targetType) {
+		try {
+			return reader(targetType).readValue(json);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static JavaType javaType(Type type) {
+		return MAPPER.getTypeFactory().constructType(type);
+	}
+}
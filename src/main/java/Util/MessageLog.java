@@ -0,0 +1,674 @@
+package Util;
+
+import Model.Message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * The MessageLog class is an append-only store of messages in memory-mapped segment files, an alternative to the
+ * message table for a store that is only ever read and written by message_id.
+ *
+ * - Every change appends a record to the active segment: a PUT record with the whole message for an insert or a
+ * patch, or a TOMBSTONE record for a delete. Records have a fixed layout: a CRC32 of the rest of the record, the
+ * record type, message_id, posted_by, time_posted_epoch, and the length and UTF-8 bytes of message_text.
+ * - When the active segment is full, a new one is started. Segments are never written again once sealed.
+ * - The primary index maps each message_id to the segment and offset of its latest PUT, one long per id, in a direct
+ * buffer outside the Java heap. Message ids are handed out in order, so the index is a plain array.
+ * - Each account's message_ids are kept in a PostingList, so one user's messages are found without a scan.
+ * - A background task compacts each sealed segment whose share of dead records (patched, deleted or tombstones)
+ * passes a threshold: its live records are copied to the active segment and the file is deleted. Tombstones are
+ * carried along while an older segment might still hold the record they delete.
+ *
+ * On open, the segments are replayed in order to rebuild the indexes; a record whose CRC does not match ends the
+ * replay of its segment, so a write torn by a crash is dropped. Readers share a read lock, and writers and compaction
+ * take the write lock. Getters are named so that Jackson can serialize the log's statistics directly.
+ */
+public class MessageLog {
+	private static final int MAGIC = 0x4D4C4F47;
+	private static final int SEGMENT_HEADER_BYTES = 8;
+	private static final int RECORD_HEADER_BYTES = 23;
+	private static final byte PUT = 1;
+	private static final byte TOMBSTONE = 2;
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	private static volatile MessageLog shared;
+
+	private final Path directory;
+	private final int segmentBytes;
+	private final boolean forceWrites;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+	private final Map<Integer, PostingList> byAccount = new ConcurrentHashMap<>();
+
+	private ByteBuffer index = ByteBuffer.allocateDirect(1024 * Long.BYTES);
+	private Segment active;
+	private int nextId = 1;
+	private volatile long messages;
+	private volatile long compactions;
+	private ScheduledExecutorService compactor;
+
+	/**
+	 * Open the log in a directory, replaying any segments already there.
+	 * @param directory the directory of the segment files, created if missing.
+	 * @param segmentBytes the size of each segment file.
+	 * @param forceWrites true to flush every write to the device before it returns.
+	 * @throws IOException if the segments could not be read or created.
+	 */
+	public MessageLog(Path directory, int segmentBytes, boolean forceWrites) throws IOException {
+		this.directory = directory;
+		this.segmentBytes = Math.max(segmentBytes, SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES + 1024);
+		this.forceWrites = forceWrites;
+		Files.createDirectories(directory);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+				segments.put(id, Segment.open(id, file));
+			}
+		}
+		for (Segment segment : segments.values()) {
+			replay(segment);
+		}
+		active = segments.isEmpty() ? newSegment(0, this.segmentBytes) : segments.lastEntry().getValue();
+	}
+
+	/**
+	 * @return the log shared by the application, opened on first use in socialmedia.storage.log.dir with segments of
+	 * storage.log.segmentBytes, flushing every write if storage.log.forceWrites is true, and compacting every
+	 * storage.log.compactionIntervalMillis the segments more than storage.log.compactionThreshold dead.
+	 */
+	public static synchronized MessageLog shared() {
+		if (shared == null) {
+			try {
+				shared = new MessageLog(Paths.get(AppConfig.getString("storage.log.dir", "./messagelog")),
+						AppConfig.getInt("storage.log.segmentBytes", 64 * 1024 * 1024),
+						"true".equalsIgnoreCase(AppConfig.getString("storage.log.forceWrites", "false")));
+				shared.startCompaction(AppConfig.getDouble("storage.log.compactionThreshold", 0.5),
+						AppConfig.getLong("storage.log.compactionIntervalMillis", 60000));
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not open the message log", e);
+			}
+		}
+		return shared;
+	}
+
+	/**
+	 * @return the log shared by the application, or null if it was never opened.
+	 */
+	public static MessageLog sharedIfOpen() {
+		return shared;
+	}
+
+	/**
+	 * Replace the contents of the shared log with the rows of the message table, after the test database was reset.
+	 * This is done if the shared log is open, or if socialmedia.storage.engine selects the log, so that the first
+	 * store created afterwards serves the seed rows rather than what an earlier run left in the segments. It is the
+	 * only way rows of the table reach the log; the message_ids of later messages are handed out by the log.
+	 * @param connection the connection to read the message table with.
+	 * @throws SQLException if the message table could not be read.
+	 * @throws IOException if the segments could not be rewritten.
+	 */
+	public static synchronized void reloadShared(Connection connection) throws SQLException, IOException {
+		if (shared == null && !"log".equalsIgnoreCase(AppConfig.getString("storage.engine", "sql").trim())) {
+			return;
+		}
+		List<Message> rows = new ArrayList<>();
+		try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT * FROM message ORDER BY message_id;");
+				ResultSet rs = preparedStatement.executeQuery()) {
+			while (rs.next()) {
+				rows.add(new Message(rs.getInt("message_id"), rs.getInt("posted_by"), rs.getString("message_text"),
+						rs.getLong("time_posted_epoch")));
+			}
+		}
+		shared().reset(rows);
+	}
+
+	/**
+	 * Compact in the background every intervalMillis.
+	 * @param threshold the share of a segment's bytes that must be dead before it is compacted.
+	 * @param intervalMillis the time between two checks.
+	 */
+	public synchronized void startCompaction(double threshold, long intervalMillis) {
+		if (compactor != null || intervalMillis <= 0) {
+			return;
+		}
+		compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "message-log-compactor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		compactor.scheduleWithFixedDelay(() -> {
+			try {
+				compact(threshold);
+			} catch (IOException e) {
+				System.out.println(e.getMessage());
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Append a new message and give it the next message_id.
+	 * @param message the message, whose message_id is ignored.
+	 * @return the stored message, with its message_id.
+	 * @throws IOException if a new segment could not be created.
+	 */
+	public Message append(Message message) throws IOException {
+		lock.writeLock().lock();
+		try {
+			Message stored = new Message(nextId, message.getPosted_by(), message.getMessage_text(),
+					message.getTime_posted_epoch());
+			put(stored);
+			force();
+			return stored;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Append new messages together, with a single flush if writes are forced.
+	 * @param newMessages the messages, whose message_ids are ignored.
+	 * @return the stored messages, in the same order, with their message_ids.
+	 * @throws IOException if a new segment could not be created.
+	 */
+	public List<Message> appendAll(List<Message> newMessages) throws IOException {
+		lock.writeLock().lock();
+		try {
+			List<Message> stored = new ArrayList<>(newMessages.size());
+			for (Message message : newMessages) {
+				Message added = new Message(nextId, message.getPosted_by(), message.getMessage_text(),
+						message.getTime_posted_epoch());
+				put(added);
+				stored.add(added);
+			}
+			force();
+			return stored;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @param messageId a message_id.
+	 * @return the message, or null if there is no such message.
+	 */
+	public Message get(int messageId) {
+		lock.readLock().lock();
+		try {
+			long location = location(messageId);
+			return location == 0 ? null : read(location);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Replace the text of a message.
+	 * @param messageId a message_id.
+	 * @param messageText the new message_text.
+	 * @return the updated message, or null if there is no such message.
+	 * @throws IOException if a new segment could not be created.
+	 */
+	public Message update(int messageId, String messageText) throws IOException {
+		lock.writeLock().lock();
+		try {
+			long location = location(messageId);
+			if (location == 0) {
+				return null;
+			}
+			Message current = read(location);
+			Message updated = new Message(messageId, current.getPosted_by(), messageText, current.getTime_posted_epoch());
+			put(updated);
+			force();
+			return updated;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Delete a message.
+	 * @param messageId a message_id.
+	 * @return the deleted message, or null if there is no such message.
+	 * @throws IOException if a new segment could not be created.
+	 */
+	public Message delete(int messageId) throws IOException {
+		lock.writeLock().lock();
+		try {
+			long location = location(messageId);
+			if (location == 0) {
+				return null;
+			}
+			Message deleted = read(location);
+			write(TOMBSTONE, messageId, deleted.getPosted_by(), 0, new byte[0]);
+			markDead(location);
+			setLocation(messageId, 0);
+			byAccount.get(deleted.getPosted_by()).remove(messageId);
+			messages--;
+			force();
+			return deleted;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @param afterId only messages with a greater message_id are returned, 0 to start from the beginning.
+	 * @param limit the maximum number of messages to return.
+	 * @return up to limit messages, in message_id order.
+	 */
+	public List<Message> scan(int afterId, int limit) {
+		lock.readLock().lock();
+		try {
+			List<Message> found = new ArrayList<>();
+			for (int id = Math.max(afterId + 1, 1); id < nextId && found.size() < limit; id++) {
+				long location = location(id);
+				if (location != 0) {
+					found.add(read(location));
+				}
+			}
+			return found;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param accountId the posted_by/account_id of the messages.
+	 * @param afterId only messages with a greater message_id are returned, 0 to start from the beginning.
+	 * @param limit the maximum number of messages to return.
+	 * @return up to limit messages of the account, in message_id order.
+	 */
+	public List<Message> scanAccount(int accountId, int afterId, int limit) {
+		List<Message> found = new ArrayList<>();
+		PostingList ids = byAccount.get(accountId);
+		if (ids == null) {
+			return found;
+		}
+		lock.readLock().lock();
+		try {
+			for (int id : ids.toArray()) {
+				if (id > afterId && found.size() < limit) {
+					long location = location(id);
+					if (location != 0) {
+						found.add(read(location));
+					}
+				}
+			}
+			return found;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Compact every sealed segment whose share of dead bytes is at least the threshold.
+	 * @param threshold the share of a segment's bytes that must be dead, from 0 to 1.
+	 * @throws IOException if a segment could not be copied or deleted.
+	 */
+	public void compact(double threshold) throws IOException {
+		lock.writeLock().lock();
+		try {
+			for (Segment segment : new ArrayList<>(segments.values())) {
+				if (segment != active && segment.deadRatio() >= threshold) {
+					compact(segment);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Drop every segment and replace the contents of the log with the given messages, keeping their message_ids.
+	 * @param rows the messages, in message_id order.
+	 * @throws IOException if the segments could not be deleted or created.
+	 */
+	public void reset(List<Message> rows) throws IOException {
+		lock.writeLock().lock();
+		try {
+			for (Segment segment : segments.values()) {
+				segment.delete();
+			}
+			segments.clear();
+			byAccount.clear();
+			index = ByteBuffer.allocateDirect(index.capacity());
+			nextId = 1;
+			messages = 0;
+			active = newSegment(0, segmentBytes);
+			for (Message row : rows) {
+				nextId = row.getMessage_id();
+				put(row);
+			}
+			force();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of segment files.
+	 */
+	public int getSegments() {
+		lock.readLock().lock();
+		try {
+			return segments.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of messages stored.
+	 */
+	public long getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @return the number of bytes written to the segments, live or dead.
+	 */
+	public long getUsedBytes() {
+		lock.readLock().lock();
+		try {
+			long used = 0;
+			for (Segment segment : segments.values()) {
+				used += segment.position - SEGMENT_HEADER_BYTES;
+			}
+			return used;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of bytes taken by records that are patched, deleted or tombstones.
+	 */
+	public long getDeadBytes() {
+		lock.readLock().lock();
+		try {
+			long dead = 0;
+			for (Segment segment : segments.values()) {
+				dead += segment.deadBytes;
+			}
+			return dead;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of segments compacted away.
+	 */
+	public long getCompactions() {
+		return compactions;
+	}
+
+	/**
+	 * @return the bytes taken by the primary index, outside the Java heap.
+	 */
+	public long getIndexBytes() {
+		return index.capacity();
+	}
+
+	/**
+	 * Write a PUT record for a message and point the indexes at it.
+	 */
+	private void put(Message message) throws IOException {
+		int messageId = message.getMessage_id();
+		long previous = location(messageId);
+		long location = write(PUT, messageId, message.getPosted_by(), message.getTime_posted_epoch(),
+				message.getMessage_text().getBytes(StandardCharsets.UTF_8));
+		if (previous != 0) {
+			markDead(previous);
+		} else {
+			messages++;
+		}
+		setLocation(messageId, location);
+		byAccount.computeIfAbsent(message.getPosted_by(), key -> new PostingList()).add(messageId);
+		nextId = Math.max(nextId, messageId + 1);
+	}
+
+	/**
+	 * Append a record to the active segment, starting a new segment if it does not fit.
+	 * @return the location of the record.
+	 */
+	private long write(byte type, int messageId, int postedBy, long timePostedEpoch, byte[] text) throws IOException {
+		int size = RECORD_HEADER_BYTES + text.length;
+		if (active.position + size > active.buffer.capacity()) {
+			active = newSegment(active.id + 1, Math.max(segmentBytes, SEGMENT_HEADER_BYTES + size));
+		}
+		MappedByteBuffer buffer = active.buffer;
+		int offset = active.position;
+		buffer.put(offset + 4, type);
+		buffer.putInt(offset + 5, messageId);
+		buffer.putInt(offset + 9, postedBy);
+		buffer.putLong(offset + 13, timePostedEpoch);
+		buffer.putShort(offset + 21, (short) text.length);
+		for (int i = 0; i < text.length; i++) {
+			buffer.put(offset + RECORD_HEADER_BYTES + i, text[i]);
+		}
+		// The CRC is written last, so a record is only valid once all of it is in place.
+		buffer.putInt(offset, checksum(buffer, offset, size));
+		active.position += size;
+		if (type == TOMBSTONE) {
+			active.deadBytes += size;
+		}
+		return toLocation(active.id, offset);
+	}
+
+	private Message read(long location) {
+		Segment segment = segments.get(segmentId(location));
+		int offset = offset(location);
+		ByteBuffer buffer = segment.buffer;
+		byte[] text = new byte[buffer.getShort(offset + 21) & 0xFFFF];
+		for (int i = 0; i < text.length; i++) {
+			text[i] = buffer.get(offset + RECORD_HEADER_BYTES + i);
+		}
+		return new Message(buffer.getInt(offset + 5), buffer.getInt(offset + 9),
+				new String(text, StandardCharsets.UTF_8), buffer.getLong(offset + 13));
+	}
+
+	/**
+	 * Rebuild the indexes from the records of a segment, stopping at the first record that is missing or torn.
+	 */
+	private void replay(Segment segment) {
+		ByteBuffer buffer = segment.buffer;
+		int offset = SEGMENT_HEADER_BYTES;
+		while (offset + RECORD_HEADER_BYTES <= buffer.capacity()) {
+			byte type = buffer.get(offset + 4);
+			int size = RECORD_HEADER_BYTES + (buffer.getShort(offset + 21) & 0xFFFF);
+			if ((type != PUT && type != TOMBSTONE) || offset + size > buffer.capacity()
+					|| buffer.getInt(offset) != checksum(buffer, offset, size)) {
+				break;
+			}
+			int messageId = buffer.getInt(offset + 5);
+			long previous = location(messageId);
+			if (previous != 0) {
+				markDead(previous);
+			}
+			if (type == PUT) {
+				if (previous == 0) {
+					messages++;
+				}
+				setLocation(messageId, toLocation(segment.id, offset));
+				byAccount.computeIfAbsent(buffer.getInt(offset + 9), key -> new PostingList()).add(messageId);
+			} else {
+				if (previous != 0) {
+					messages--;
+					byAccount.get(buffer.getInt(offset + 9)).remove(messageId);
+				}
+				setLocation(messageId, 0);
+				segment.deadBytes += size;
+			}
+			nextId = Math.max(nextId, messageId + 1);
+			offset += size;
+		}
+		segment.position = offset;
+	}
+
+	/**
+	 * Copy the live records of a sealed segment to the active segment and delete it.
+	 */
+	private void compact(Segment segment) throws IOException {
+		boolean olderSegments = segments.firstKey() < segment.id;
+		ByteBuffer buffer = segment.buffer;
+		int offset = SEGMENT_HEADER_BYTES;
+		while (offset < segment.position) {
+			byte type = buffer.get(offset + 4);
+			int size = RECORD_HEADER_BYTES + (buffer.getShort(offset + 21) & 0xFFFF);
+			int messageId = buffer.getInt(offset + 5);
+			if (type == PUT && location(messageId) == toLocation(segment.id, offset)) {
+				Message message = read(toLocation(segment.id, offset));
+				setLocation(messageId, write(PUT, messageId, message.getPosted_by(), message.getTime_posted_epoch(),
+						message.getMessage_text().getBytes(StandardCharsets.UTF_8)));
+			} else if (type == TOMBSTONE && olderSegments) {
+				write(TOMBSTONE, messageId, buffer.getInt(offset + 9), 0, new byte[0]);
+			}
+			offset += size;
+		}
+		force();
+		segments.remove(segment.id);
+		segment.delete();
+		compactions++;
+	}
+
+	private void markDead(long location) {
+		Segment segment = segments.get(segmentId(location));
+		segment.deadBytes += RECORD_HEADER_BYTES + (segment.buffer.getShort(offset(location) + 21) & 0xFFFF);
+	}
+
+	private Segment newSegment(int id, int size) throws IOException {
+		Segment segment = Segment.create(id, directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX), size);
+		segments.put(id, segment);
+		return segment;
+	}
+
+	private void force() {
+		if (forceWrites) {
+			active.buffer.force();
+		}
+	}
+
+	private long location(int messageId) {
+		if (messageId < 1 || (long) messageId * Long.BYTES >= index.capacity()) {
+			return 0;
+		}
+		return index.getLong(messageId * Long.BYTES);
+	}
+
+	private void setLocation(int messageId, long location) {
+		if ((long) messageId * Long.BYTES >= index.capacity()) {
+			// Double the index, so a run of new messages grows it a logarithmic number of times.
+			long capacity = index.capacity();
+			while (capacity <= (long) messageId * Long.BYTES) {
+				capacity *= 2;
+			}
+			ByteBuffer grown = ByteBuffer.allocateDirect((int) Math.min(capacity, Integer.MAX_VALUE - 7));
+			ByteBuffer copy = index.duplicate();
+			copy.clear();
+			grown.put(copy);
+			grown.clear();
+			index = grown;
+		}
+		index.putLong(messageId * Long.BYTES, location);
+	}
+
+	/**
+	 * A location packs the segment id plus one, so that 0 means absent, above the offset in the segment.
+	 */
+	private static long toLocation(int segmentId, int offset) {
+		return ((long) (segmentId + 1) << 32) | (offset & 0xFFFFFFFFL);
+	}
+
+	private static int segmentId(long location) {
+		return (int) (location >>> 32) - 1;
+	}
+
+	private static int offset(long location) {
+		return (int) location;
+	}
+
+	private static int checksum(ByteBuffer buffer, int offset, int size) {
+		CRC32 crc = new CRC32();
+		ByteBuffer record = buffer.duplicate();
+		record.position(offset + 4).limit(offset + size);
+		crc.update(record);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * One segment file, mapped into memory whole.
+	 */
+	private static class Segment {
+		final int id;
+		final Path file;
+		final MappedByteBuffer buffer;
+		int position;
+		long deadBytes;
+
+		private Segment(int id, Path file, MappedByteBuffer buffer) {
+			this.id = id;
+			this.file = file;
+			this.buffer = buffer;
+			this.position = SEGMENT_HEADER_BYTES;
+		}
+
+		static Segment create(int id, Path file, int size) throws IOException {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+					StandardOpenOption.WRITE)) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+				buffer.putInt(0, MAGIC);
+				buffer.putInt(4, 1);
+				return new Segment(id, file, buffer);
+			}
+		}
+
+		static Segment open(int id, Path file) throws IOException {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+				if (buffer.capacity() < SEGMENT_HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+					throw new IOException(file + " is not a message log segment");
+				}
+				return new Segment(id, file, buffer);
+			}
+		}
+
+		double deadRatio() {
+			int used = position - SEGMENT_HEADER_BYTES;
+			return used == 0 ? 0 : (double) deadBytes / used;
+		}
+
+		/**
+		 * Delete the file. The mapping stays valid until the buffer is collected, which is harmless on a deleted file.
+		 */
+		void delete() throws IOException {
+			Files.deleteIfExists(file);
+		}
+	}
+}
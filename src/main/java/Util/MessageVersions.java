@@ -0,0 +1,111 @@
+package Util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The MessageVersions class counts the writes to the message table, in total and per account, so that responses
+ * built from the messages can be given validators (an ETag and a Last-Modified time) without reading the table.
+ *
+ * MessageDAO bumps the counters after each write it commits. A reader must take the version before it queries, so
+ * that a write racing with the query can only make the validator older than the body, never newer.
+ *
+ * The counters live in memory, so the ETag also carries an epoch that is new each time the process starts or the
+ * test database is reset; a validator from before then never matches again.
+ */
+public class MessageVersions {
+	private static volatile String epoch = newEpoch();
+	private static volatile long epochStartedMillis = System.currentTimeMillis();
+	private static volatile Version all = new Version(epoch, 0, epochStartedMillis);
+	private static final Map<Integer, Version> byAccount = new ConcurrentHashMap<>();
+
+	private MessageVersions() {
+	}
+
+	/**
+	 * Record a committed write to the messages of an account.
+	 * @param accountId the posted_by of the written message.
+	 */
+	public static void messagesChanged(int accountId) {
+		long now = System.currentTimeMillis();
+		synchronized (MessageVersions.class) {
+			all = new Version(epoch, all.value + 1, now);
+		}
+		byAccount.compute(accountId,
+				(key, current) -> new Version(epoch, current == null ? 1 : current.value + 1, now));
+	}
+
+	/**
+	 * @return the version of the message table as a whole.
+	 */
+	public static Version all() {
+		return all;
+	}
+
+	/**
+	 * @param accountId an account_id.
+	 * @return the version of the messages of the account.
+	 */
+	public static Version ofAccount(int accountId) {
+		Version version = byAccount.get(accountId);
+		// An account not written in this epoch is as old as the epoch.
+		return version != null ? version : new Version(epoch, 0, epochStartedMillis);
+	}
+
+	/**
+	 * Forget every version and start a new epoch, eg after the database was reset behind the DAOs' back.
+	 */
+	public static synchronized void reset() {
+		epoch = newEpoch();
+		epochStartedMillis = System.currentTimeMillis();
+		all = new Version(epoch, 0, epochStartedMillis);
+		byAccount.clear();
+	}
+
+	private static String newEpoch() {
+		return Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+	}
+
+	/**
+	 * A snapshot of one counter: how many writes it has seen and when the last one was.
+	 */
+	public static class Version {
+		private final String epoch;
+		private final long value;
+		private final long lastModifiedMillis;
+
+		Version(String epoch, long value, long lastModifiedMillis) {
+			this.epoch = epoch;
+			this.value = value;
+			this.lastModifiedMillis = lastModifiedMillis;
+		}
+
+		/**
+		 * @return the number of writes counted.
+		 */
+		public long getValue() {
+			return value;
+		}
+
+		/**
+		 * @return the time of the last write counted, in epoch milliseconds.
+		 */
+		public long getLastModifiedMillis() {
+			return lastModifiedMillis;
+		}
+
+		/**
+		 * @param variant what else the response depends on, eg its query string, or null.
+		 * @return a weak ETag for a response built from this version. Weak, because the same version may be sent
+		 * compressed or not.
+		 */
+		public String etag(String variant) {
+			String tag = epoch + "-" + value;
+			if (variant != null && !variant.isEmpty()) {
+				tag += "-" + Integer.toHexString(variant.hashCode());
+			}
+			return "W/\"" + tag + "\"";
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.h2.tools.RunScript;
+
+/**
+ * The MigrationRunner class brings the database schema up to date at startup. Each migration is a sql script in
+ * src/main/resources/db/migration named V{version}__{description}.sql. Applied versions are recorded in the
+ * schema_version table, so every script runs exactly once per database, in version order.
+ *
+ * To change the schema, add a new script with the next version number and append it to MIGRATIONS. Never edit a
+ * script that has already been released, since databases that applied it will not run it again.
+ *
+ * H2 commits DDL as it runs, so a script that fails part way can leave some of its statements applied; only its data
+ * changes are rolled back. The failed version is therefore recorded in schema_version with success = false, and
+ * every later run refuses to migrate until the schema has been repaired by hand and that row deleted, rather than
+ * running the script again over its own leftovers.
+ */
+public class MigrationRunner {
+
+	/**
+	 * Location of the migration scripts on the classpath.
+	 */
+	private static final String LOCATION = "db/migration/";
+
+	/**
+	 * Every migration script, in the order they must be applied.
+	 */
+	static final String[] MIGRATIONS = {
+			"V1__create_tables.sql",
+			"V2__message_indexes.sql",
+			"V3__message_changes.sql",
+	};
+
+	private static final Pattern NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+	private MigrationRunner() {
+	}
+
+	/**
+	 * Apply every migration that has not been applied to the database yet.
+	 * @param connection a connection to the database to migrate.
+	 * @return the number of migrations applied.
+	 * @throws SQLException if a migration failed, or failed on an earlier run and has not been repaired. Migrations
+	 * before it stay applied.
+	 */
+	public static int migrate(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("create table if not exists schema_version ("
+					+ "version int primary key, "
+					+ "description varchar(255), "
+					+ "applied_at timestamp default current_timestamp, "
+					+ "success boolean default true not null)");
+			// Tables created before failures were recorded lack the column.
+			statement.execute("alter table schema_version add column if not exists success boolean default true not null");
+		}
+		Set<Integer> applied = appliedVersions(connection);
+
+		int count = 0;
+		boolean autoCommit = connection.getAutoCommit();
+		try {
+			connection.setAutoCommit(false);
+			for (String migration : MIGRATIONS) {
+				Matcher matcher = NAME.matcher(migration);
+				if (!matcher.matches()) {
+					throw new SQLException("Migration " + migration + " is not named V{version}__{description}.sql");
+				}
+				int version = Integer.parseInt(matcher.group(1));
+				if (applied.contains(version)) {
+					continue;
+				}
+				apply(connection, migration, version, matcher.group(2).replace('_', ' '));
+				count++;
+			}
+		} finally {
+			connection.setAutoCommit(autoCommit);
+		}
+		return count;
+	}
+
+	private static Set<Integer> appliedVersions(Connection connection) throws SQLException {
+		Set<Integer> versions = new HashSet<>();
+		try (Statement statement = connection.createStatement();
+				ResultSet rs = statement.executeQuery("select version, description, success from schema_version")) {
+			while (rs.next()) {
+				if (!rs.getBoolean(3)) {
+					throw new SQLException("Migration V" + rs.getInt(1) + " (" + rs.getString(2) + ") failed on an "
+							+ "earlier run and may be partly applied; repair the schema, then delete its row from "
+							+ "schema_version");
+				}
+				versions.add(rs.getInt(1));
+			}
+		}
+		return versions;
+	}
+
+	private static void apply(Connection connection, String migration, int version, String description)
+			throws SQLException {
+		InputStream script = MigrationRunner.class.getClassLoader().getResourceAsStream(LOCATION + migration);
+		if (script == null) {
+			throw new SQLException("Migration " + migration + " was not found on the classpath");
+		}
+		try (Reader reader = new InputStreamReader(script, StandardCharsets.UTF_8)) {
+			RunScript.execute(connection, reader);
+			record(connection, version, description, true);
+			connection.commit();
+			System.out.println("Applied migration " + migration);
+		} catch (SQLException e) {
+			connection.rollback();
+			SQLException failure = new SQLException("Migration " + migration + " failed: " + e.getMessage(), e);
+			try {
+				record(connection, version, description, false);
+				connection.commit();
+			} catch (SQLException recordFailure) {
+				failure.addSuppressed(recordFailure);
+			}
+			throw failure;
+		} catch (IOException e) {
+			throw new SQLException("Migration " + migration + " could not be read", e);
+		}
+	}
+
+	private static void record(Connection connection, int version, String description, boolean success)
+			throws SQLException {
+		try (PreparedStatement record = connection.prepareStatement(
+				"insert into schema_version (version, description, success) values (?, ?, ?)")) {
+			record.setInt(1, version);
+			record.setString(2, description);
+			record.setBoolean(3, success);
+			record.executeUpdate();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of the counters of a ConnectionPool. Getters are named so that Jackson can serialize the
+ * snapshot directly.
+ */
+public class PoolStats {
+	private final int active;
+	private final int idle;
+	private final int waiters;
+	private final int maxSize;
+	private final long acquired;
+	private final long timeouts;
+	private final long rejected;
+	private final long avgAcquireMicros;
+	private final long maxAcquireMicros;
+	private final long created;
+	private final long evicted;
+	private final long leaksDetected;
+	private final long statementCacheHits;
+	private final long statementCacheMisses;
+	private final long statementCacheEvictions;
+
+	public PoolStats(int active, int idle, int waiters, int maxSize, long acquired, long timeouts, long rejected,
+			long avgAcquireMicros, long maxAcquireMicros, long created, long evicted, long leaksDetected,
+			long statementCacheHits, long statementCacheMisses, long statementCacheEvictions) {
+		this.active = active;
+		this.idle = idle;
+		this.waiters = waiters;
+		this.maxSize = maxSize;
+		this.acquired = acquired;
+		this.timeouts = timeouts;
+		this.rejected = rejected;
+		this.avgAcquireMicros = avgAcquireMicros;
+		this.maxAcquireMicros = maxAcquireMicros;
+		this.created = created;
+		this.evicted = evicted;
+		this.leaksDetected = leaksDetected;
+		this.statementCacheHits = statementCacheHits;
+		this.statementCacheMisses = statementCacheMisses;
+		this.statementCacheEvictions = statementCacheEvictions;
+	}
+
+	/**
+	 * @return the number of connections currently borrowed.
+	 */
+	public int getActive() {
+		return active;
+	}
+
+	/**
+	 * @return the number of open connections waiting in the pool.
+	 */
+	public int getIdle() {
+		return idle;
+	}
+
+	/**
+	 * @return the number of callers currently waiting for a connection.
+	 */
+	public int getWaiters() {
+		return waiters;
+	}
+
+	/**
+	 * @return the maximum number of connections that may be borrowed at once.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return the total number of successful acquires.
+	 */
+	public long getAcquired() {
+		return acquired;
+	}
+
+	/**
+	 * @return the total number of acquires that timed out waiting for a connection.
+	 */
+	public long getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * @return the total number of acquires the call gate turned away before they waited for a connection.
+	 */
+	public long getRejected() {
+		return rejected;
+	}
+
+	/**
+	 * @return the mean time a successful acquire took, in microseconds.
+	 */
+	public long getAvgAcquireMicros() {
+		return avgAcquireMicros;
+	}
+
+	/**
+	 * @return the longest time a successful acquire took, in microseconds.
+	 */
+	public long getMaxAcquireMicros() {
+		return maxAcquireMicros;
+	}
+
+	/**
+	 * @return the total number of physical connections opened.
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	/**
+	 * @return the total number of physical connections closed by the pool.
+	 */
+	public long getEvicted() {
+		return evicted;
+	}
+
+	/**
+	 * @return the number of borrowed connections reported as possible leaks.
+	 */
+	public long getLeaksDetected() {
+		return leaksDetected;
+	}
+
+	/**
+	 * @return the number of prepareStatement() calls served from a connection's statement cache.
+	 */
+	public long getStatementCacheHits() {
+		return statementCacheHits;
+	}
+
+	/**
+	 * @return the number of prepareStatement() calls that had to parse and plan the SQL.
+	 */
+	public long getStatementCacheMisses() {
+		return statementCacheMisses;
+	}
+
+	/**
+	 * @return the number of cached statements closed to make room for others.
+	 */
+	public long getStatementCacheEvictions() {
+		return statementCacheEvictions;
+	}
+
+	@Override
+	public String toString() {
+		return "PoolStats{" +
+				"active=" + active +
+				", idle=" + idle +
+				", waiters=" + waiters +
+				", maxSize=" + maxSize +
+				", acquired=" + acquired +
+				", timeouts=" + timeouts +
+				", rejected=" + rejected +
+				", avgAcquireMicros=" + avgAcquireMicros +
+				", maxAcquireMicros=" + maxAcquireMicros +
+				", created=" + created +
+				", evicted=" + evicted +
+				", leaksDetected=" + leaksDetected +
+				", statementCacheHits=" + statementCacheHits +
+				", statementCacheMisses=" + statementCacheMisses +
+				", statementCacheEvictions=" + statementCacheEvictions +
+				'}';
+	}
+}
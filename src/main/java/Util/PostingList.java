@@ -0,0 +1,187 @@
+package Util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * The PostingList class is a sorted set of ints, eg message_ids, kept compressed: the ids are stored as the gaps
+ * between them, each gap written as a variable-length integer of 7 bits per byte, so dense lists of ids cost one or two
+ * bytes per id instead of four.
+ *
+ * The compressed block is immutable. Adds and removes collect in two small sorted buffers and are merged into a new
+ * block once there are BUFFER_SIZE of them, so a change costs a buffer insert and, once per BUFFER_SIZE changes, one
+ * pass over the list. Methods are synchronized, so a list may be changed and read concurrently.
+ */
+public class PostingList {
+	private static final int BUFFER_SIZE = 128;
+	private static final byte[] EMPTY = new byte[0];
+
+	private byte[] packed = EMPTY;
+	private int packedCount;
+	private int[] added = new int[8];
+	private int addedCount;
+	private int[] removed = new int[8];
+	private int removedCount;
+
+	/**
+	 * @param ids the ids of the new list, sorted ascending and without duplicates.
+	 * @param count the number of ids to take from the start of the array.
+	 * @return a list of the ids.
+	 */
+	public static PostingList of(int[] ids, int count) {
+		PostingList list = new PostingList();
+		list.packed = encode(ids, count);
+		list.packedCount = count;
+		return list;
+	}
+
+	/**
+	 * @param id the id to add. Adding an id that is already in the list has no effect.
+	 */
+	public synchronized void add(int id) {
+		int index = Arrays.binarySearch(removed, 0, removedCount, id);
+		if (index >= 0) {
+			removedCount = delete(removed, removedCount, index);
+		}
+		index = Arrays.binarySearch(added, 0, addedCount, id);
+		if (index < 0) {
+			added = insert(added, addedCount++, -index - 1, id);
+		}
+		compactIfFull();
+	}
+
+	/**
+	 * @param id the id to remove. Removing an id that is not in the list has no effect.
+	 */
+	public synchronized void remove(int id) {
+		int index = Arrays.binarySearch(added, 0, addedCount, id);
+		if (index >= 0) {
+			addedCount = delete(added, addedCount, index);
+		}
+		index = Arrays.binarySearch(removed, 0, removedCount, id);
+		if (index < 0) {
+			removed = insert(removed, removedCount++, -index - 1, id);
+		}
+		compactIfFull();
+	}
+
+	/**
+	 * @return the ids of the list, sorted ascending.
+	 */
+	public synchronized int[] toArray() {
+		return merge(decode(packed, packedCount), packedCount);
+	}
+
+	/**
+	 * @return true if the list holds no ids.
+	 */
+	public synchronized boolean isEmpty() {
+		if (addedCount > 0) {
+			return false;
+		}
+		// Buffered removes may name ids that were never in the block, so only a count that could cover it is checked.
+		return packedCount == 0 || (removedCount >= packedCount && toArray().length == 0);
+	}
+
+	/**
+	 * @return the number of bytes the compressed block takes.
+	 */
+	public synchronized int getCompressedBytes() {
+		return packed.length;
+	}
+
+	/**
+	 * @return the number of ids in the compressed block, not counting the buffered changes.
+	 */
+	public synchronized int getCompressedCount() {
+		return packedCount;
+	}
+
+	private void compactIfFull() {
+		if (addedCount + removedCount >= BUFFER_SIZE) {
+			int[] ids = toArray();
+			packed = encode(ids, ids.length);
+			packedCount = ids.length;
+			addedCount = 0;
+			removedCount = 0;
+		}
+	}
+
+	/**
+	 * Merge the buffered adds into the given sorted ids and drop the buffered removes.
+	 */
+	private int[] merge(int[] ids, int count) {
+		int[] merged = new int[count + addedCount];
+		int i = 0;
+		int a = 0;
+		int r = 0;
+		int size = 0;
+		while (i < count || a < addedCount) {
+			int next;
+			if (a == addedCount || (i < count && ids[i] < added[a])) {
+				next = ids[i++];
+			} else if (i == count || added[a] < ids[i]) {
+				next = added[a++];
+			} else {
+				next = ids[i++];
+				a++;
+			}
+			while (r < removedCount && removed[r] < next) {
+				r++;
+			}
+			if (r < removedCount && removed[r] == next) {
+				continue;
+			}
+			merged[size++] = next;
+		}
+		return size == merged.length ? merged : Arrays.copyOf(merged, size);
+	}
+
+	private static byte[] encode(int[] ids, int count) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(count + 4);
+		int previous = 0;
+		for (int i = 0; i < count; i++) {
+			int gap = ids[i] - previous;
+			previous = ids[i];
+			while ((gap & ~0x7F) != 0) {
+				out.write((gap & 0x7F) | 0x80);
+				gap >>>= 7;
+			}
+			out.write(gap);
+		}
+		return out.toByteArray();
+	}
+
+	private static int[] decode(byte[] bytes, int count) {
+		int[] ids = new int[count];
+		int position = 0;
+		int previous = 0;
+		for (int i = 0; i < count; i++) {
+			int gap = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[position++];
+				gap |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			previous += gap;
+			ids[i] = previous;
+		}
+		return ids;
+	}
+
+	private static int[] insert(int[] array, int count, int index, int value) {
+		if (count == array.length) {
+			array = Arrays.copyOf(array, count * 2);
+		}
+		System.arraycopy(array, index, array, index + 1, count - index);
+		array[index] = value;
+		return array;
+	}
+
+	private static int delete(int[] array, int count, int index) {
+		System.arraycopy(array, index + 1, array, index, count - index - 1);
+		return count - 1;
+	}
+}
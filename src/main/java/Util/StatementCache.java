@@ -0,0 +1,181 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The StatementCache class keeps the prepared statements of one pooled connection, keyed by their SQL text, so
+ * that repeated calls to prepareStatement() with the same SQL reuse the already parsed and planned statement.
+ *
+ * Statements handed out by the cache are proxies: calling close() on them clears their parameters and keeps them
+ * open for the next caller. When the cache is full the least recently used statement is really closed. A statement
+ * that is still in use when the same SQL is prepared again is not shared; the second caller gets a plain,
+ * uncached statement instead.
+ *
+ * A StatementCache is only ever used by the thread that has borrowed its connection, so it is not thread-safe.
+ */
+class StatementCache {
+	private final Connection physical;
+	private final Connection owner;
+	private final int maxSize;
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder evictions;
+	private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * @param physical the connection statements are prepared on.
+	 * @param owner the pooled connection proxy returned by getConnection() on a cached statement.
+	 * @param maxSize the maximum number of statements kept open, 0 to disable caching.
+	 * @param hits counter incremented when a cached statement is reused.
+	 * @param misses counter incremented when a statement has to be prepared.
+	 * @param evictions counter incremented when a cached statement is closed to make room.
+	 */
+	StatementCache(Connection physical, Connection owner, int maxSize, LongAdder hits, LongAdder misses,
+			LongAdder evictions) {
+		this.physical = physical;
+		this.owner = owner;
+		this.maxSize = maxSize;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+	}
+
+	/**
+	 * @param sql the SQL text of the statement.
+	 * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS.
+	 * @return a prepared statement for the SQL, reused from the cache when possible.
+	 * @throws SQLException if the statement could not be prepared.
+	 */
+	PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+		if (maxSize <= 0) {
+			misses.increment();
+			return physical.prepareStatement(sql, autoGeneratedKeys);
+		}
+		String key = autoGeneratedKeys + ":" + sql;
+		CachedStatement cached = statements.get(key);
+		if (cached != null) {
+			if (cached.inUse) {
+				misses.increment();
+				return physical.prepareStatement(sql, autoGeneratedKeys);
+			}
+			hits.increment();
+			cached.inUse = true;
+			return cached.proxy;
+		}
+
+		misses.increment();
+		cached = new CachedStatement(physical.prepareStatement(sql, autoGeneratedKeys));
+		cached.inUse = true;
+		statements.put(key, cached);
+		evictOverflow();
+		return cached.proxy;
+	}
+
+	/**
+	 * Take back any cached statement the borrower did not close. Called when the connection returns to the pool.
+	 */
+	void reclaim() {
+		Iterator<CachedStatement> iterator = statements.values().iterator();
+		while (iterator.hasNext()) {
+			CachedStatement cached = iterator.next();
+			if (cached.inUse) {
+				iterator.remove();
+				closeQuietly(cached.statement);
+			}
+		}
+	}
+
+	/**
+	 * Really close every cached statement. Called when the physical connection is closed.
+	 */
+	void closeAll() {
+		for (CachedStatement cached : statements.values()) {
+			closeQuietly(cached.statement);
+		}
+		statements.clear();
+	}
+
+	private void evictOverflow() {
+		Iterator<CachedStatement> eldest = statements.values().iterator();
+		while (statements.size() > maxSize && eldest.hasNext()) {
+			CachedStatement cached = eldest.next();
+			if (cached.inUse) {
+				continue;
+			}
+			eldest.remove();
+			closeQuietly(cached.statement);
+			evictions.increment();
+		}
+	}
+
+	private static void closeQuietly(Statement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			// the statement is being discarded either way
+		}
+	}
+
+	/**
+	 * A cached physical statement and the proxy handed out for it.
+	 */
+	private class CachedStatement implements InvocationHandler {
+		private final PreparedStatement statement;
+		private final PreparedStatement proxy;
+		private boolean inUse;
+
+		CachedStatement(PreparedStatement statement) {
+			this.statement = statement;
+			this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					if (inUse) {
+						inUse = false;
+						try {
+							statement.clearParameters();
+							statement.clearBatch();
+						} catch (SQLException e) {
+							statements.values().remove(this);
+							closeQuietly(statement);
+						}
+					}
+					return null;
+				case "isClosed":
+					return !inUse || statement.isClosed();
+				case "getConnection":
+					return owner;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Cached" + statement;
+				default:
+					break;
+			}
+			if (!inUse) {
+				throw new SQLException("Statement has already been closed");
+			}
+			try {
+				return method.invoke(statement, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
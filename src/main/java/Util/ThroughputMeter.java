@@ -0,0 +1,63 @@
+package Util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The ThroughputMeter class counts the rows processed by a repeated operation, such as a batch insert, and the time
+ * spent doing it, so that the rows per second can be reported. Getters are named so that Jackson can serialize the
+ * meter directly.
+ */
+public class ThroughputMeter {
+	private final LongAdder operations = new LongAdder();
+	private final LongAdder rows = new LongAdder();
+	private final LongAdder nanos = new LongAdder();
+	private volatile double lastRowsPerSecond;
+
+	/**
+	 * Record one completed operation.
+	 * @param rowCount the number of rows the operation processed.
+	 * @param elapsedNanos how long the operation took.
+	 */
+	public void record(int rowCount, long elapsedNanos) {
+		operations.increment();
+		rows.add(rowCount);
+		nanos.add(elapsedNanos);
+		lastRowsPerSecond = rate(rowCount, elapsedNanos);
+	}
+
+	/**
+	 * @return the number of operations recorded.
+	 */
+	public long getOperations() {
+		return operations.sum();
+	}
+
+	/**
+	 * @return the total number of rows processed.
+	 */
+	public long getRows() {
+		return rows.sum();
+	}
+
+	/**
+	 * @return the rows processed per second of time spent in the operation, over all operations.
+	 */
+	public double getRowsPerSecond() {
+		return rate(rows.sum(), nanos.sum());
+	}
+
+	/**
+	 * @return the rows per second of the most recent operation.
+	 */
+	public double getLastRowsPerSecond() {
+		return lastRowsPerSecond;
+	}
+
+	private static double rate(long rowCount, long elapsedNanos) {
+		if (elapsedNanos <= 0) {
+			return 0;
+		}
+		return rowCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+}
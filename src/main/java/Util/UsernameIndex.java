@@ -0,0 +1,178 @@
+package Util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The UsernameIndex class is an in-memory index of the registered usernames, so that registrations of taken usernames,
+ * and in relaxed mode logins for unknown ones, can be turned away without a query.
+ *
+ * - A Bloom filter answers "definitely absent" for most unknown usernames straight away, which is the common case
+ * during a credential-stuffing burst.
+ * - A concurrent hash index from username to account_id settles the rest, so the index as a whole gives no false
+ * positives. The filter's false positives only cost the hash lookup, and are counted so the observed rate can be
+ * reported next to the expected one.
+ * - When the number of usernames outgrows the filter, it is rebuilt from the hash index at twice the size.
+ *
+ * The index can be behind the store by an account registered by another process. In strict mode a miss is therefore
+ * re-checked against the store, while in relaxed mode a miss is trusted; either way the UNIQUE constraint on username
+ * still catches any duplicate registration it misses. Getters are named so that Jackson can serialize the index's
+ * statistics directly.
+ */
+public class UsernameIndex {
+	/**
+	 * The username and account_id of every account.
+	 */
+	public static final String ALL_USERNAMES_SQL = "SELECT account_id, username FROM account;";
+
+	private volatile Map<String, Integer> accountIds = new ConcurrentHashMap<>();
+	private final double falsePositiveRate;
+	private final boolean strict;
+	private volatile BloomFilter filter;
+
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder filterRejections = new LongAdder();
+	private final LongAdder falsePositives = new LongAdder();
+	private final LongAdder resizes = new LongAdder();
+
+	/**
+	 * @param expectedSize the number of usernames the Bloom filter is first sized for.
+	 * @param falsePositiveRate the false positive rate the Bloom filter is sized for.
+	 * @param strict true if a miss must be re-checked against the store before a username is taken to be unknown.
+	 */
+	public UsernameIndex(int expectedSize, double falsePositiveRate, boolean strict) {
+		this.falsePositiveRate = falsePositiveRate;
+		this.strict = strict;
+		this.filter = newFilter(expectedSize);
+	}
+
+	/**
+	 * Replace the contents of the index with the usernames in the database.
+	 * @param connection the connection to read the account table with.
+	 * @throws SQLException if the account table could not be read.
+	 */
+	public synchronized void load(Connection connection) throws SQLException {
+		Map<String, Integer> loaded = new ConcurrentHashMap<>();
+		try (PreparedStatement preparedStatement = connection.prepareStatement(ALL_USERNAMES_SQL);
+				ResultSet rs = preparedStatement.executeQuery()) {
+			while (rs.next()) {
+				loaded.put(rs.getString("username"), rs.getInt("account_id"));
+			}
+		}
+		accountIds = loaded;
+		filter = newFilter(Math.max(filter.getExpectedInsertions(), loaded.size() * 2));
+	}
+
+	/**
+	 * @param username a username.
+	 * @return true if an account with the username is registered.
+	 */
+	public boolean contains(String username) {
+		lookups.increment();
+		if (!filter.mightContain(username)) {
+			filterRejections.increment();
+			return false;
+		}
+		if (!accountIds.containsKey(username)) {
+			falsePositives.increment();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Record a newly registered account.
+	 * @param username the username of the persisted account.
+	 * @param accountId the account_id of the persisted account.
+	 */
+	public void add(String username, int accountId) {
+		accountIds.put(username, accountId);
+		synchronized (this) {
+			if (accountIds.size() > filter.getExpectedInsertions()) {
+				// The rebuild reads every username already in the hash index, this one included.
+				filter = newFilter(filter.getExpectedInsertions() * 2);
+				resizes.increment();
+			} else {
+				filter.add(username);
+			}
+		}
+	}
+
+	/**
+	 * @return true if a miss must be re-checked against the store.
+	 */
+	public boolean isStrict() {
+		return strict;
+	}
+
+	/**
+	 * @return the number of usernames in the index.
+	 */
+	public int getSize() {
+		return accountIds.size();
+	}
+
+	/**
+	 * @return the number of usernames the Bloom filter is currently sized for.
+	 */
+	public int getCapacity() {
+		return filter.getExpectedInsertions();
+	}
+
+	/**
+	 * @return the number of lookups.
+	 */
+	public long getLookups() {
+		return lookups.sum();
+	}
+
+	/**
+	 * @return the number of lookups the Bloom filter answered on its own.
+	 */
+	public long getFilterRejections() {
+		return filterRejections.sum();
+	}
+
+	/**
+	 * @return the number of unknown usernames the Bloom filter let through to the hash index.
+	 */
+	public long getFalsePositives() {
+		return falsePositives.sum();
+	}
+
+	/**
+	 * @return the observed false positive rate: the fraction of lookups for unknown usernames that the Bloom filter
+	 * let through.
+	 */
+	public double getFalsePositiveRate() {
+		long negatives = filterRejections.sum() + falsePositives.sum();
+		return negatives == 0 ? 0 : (double) falsePositives.sum() / negatives;
+	}
+
+	/**
+	 * @return the false positive rate expected of the Bloom filter at its current fill.
+	 */
+	public double getExpectedFalsePositiveRate() {
+		return filter.expectedFalsePositiveRate(accountIds.size());
+	}
+
+	/**
+	 * @return the number of times the Bloom filter was rebuilt at a bigger size.
+	 */
+	public long getResizes() {
+		return resizes.sum();
+	}
+
+	private BloomFilter newFilter(int expectedInsertions) {
+		BloomFilter bloomFilter = new BloomFilter(expectedInsertions, falsePositiveRate);
+		for (String username : accountIds.keySet()) {
+			bloomFilter.add(username);
+		}
+		return bloomFilter;
+	}
+}
@@ -0,0 +1,5 @@
+-- GET /accounts/{account_id}/messages: a user's messages, newest first, and keyset pages of them.
+create index if not exists idx_message_posted_by_time on message (posted_by, time_posted_epoch desc);
+create index if not exists idx_message_posted_by_id on message (posted_by, message_id);
+-- Time-ordered reads across all users.
+create index if not exists idx_message_time on message (time_posted_epoch);
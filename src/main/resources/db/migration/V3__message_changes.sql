@@ -0,0 +1,8 @@
+-- GET /messages/changes: one row per write to message, numbered by version.
+-- change_type is 1 for created, 2 for updated and 3 for deleted. Old rows are pruned by MessageDAO.
+create table if not exists message_change (
+    version bigint primary key auto_increment,
+    message_id int not null,
+    change_type tinyint not null,
+    changed_at bigint not null
+);
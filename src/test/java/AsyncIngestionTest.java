@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import DAO.MessageStore;
+import DAO.StorageBackend;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class AsyncIngestionTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+    /**
+     * Holds back the writer of the ingestion queue until it is counted down.
+     */
+    CountDownLatch releaseWriter = new CountDownLatch(1);
+    /**
+     * Counted down once the writer of the ingestion queue is held back.
+     */
+    CountDownLatch writerBlocked = new CountDownLatch(1);
+
+    /**
+     * Before every test, reset the database, switch to asynchronous ingestion with a queue of one message written
+     * one at a time, and create a new webClient and ObjectMapper for interacting locally on the web. Each test
+     * starts its own Javalin app.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        System.setProperty("socialmedia.ingest.mode", "async");
+        System.setProperty("socialmedia.ingest.queueCapacity", "1");
+        System.setProperty("socialmedia.ingest.maxGroupSize", "1");
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        releaseWriter.countDown();
+        app.stop();
+        System.clearProperty("socialmedia.ingest.mode");
+        System.clearProperty("socialmedia.ingest.queueCapacity");
+        System.clearProperty("socialmedia.ingest.maxGroupSize");
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with valid message credentials, with asynchronous
+     * ingestion
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of message object, which is in the message table once the response is
+     *  sent
+     */
+    @Test
+    public void createMessageAsyncPersisted() throws IOException, InterruptedException, SQLException {
+        startApp(new SocialMediaController(StorageBackend.SQL));
+
+        HttpResponse<String> response = webClient.send(postMessageRequest("hello async"),
+                HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        Message expectedResult = new Message(2, 1, "hello async", 1669947792);
+        Assert.assertEquals(expectedResult, objectMapper.readValue(response.body(), Message.class));
+
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(
+                        "SELECT * FROM message WHERE message_id = ?;")) {
+            preparedStatement.setInt(1, 2);
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                Assert.assertTrue(rs.next());
+                Assert.assertEquals("hello async", rs.getString("message_text"));
+            }
+        }
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages while the writer is busy with one message and a
+     * second one fills the queue
+     *
+     * Expected Response:
+     *  Status Code: 429 for the third message, then 200 for the first two once the writer is released
+     */
+    @Test
+    public void createMessageQueueFull() throws IOException, InterruptedException {
+        startApp(new SocialMediaController(blockingMessageStore(), new AccountDAO()));
+
+        CompletableFuture<HttpResponse<String>> first = webClient.sendAsync(postMessageRequest("first"),
+                HttpResponse.BodyHandlers.ofString());
+        Assert.assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<HttpResponse<String>> second = webClient.sendAsync(postMessageRequest("second"),
+                HttpResponse.BodyHandlers.ofString());
+        Thread.sleep(500);
+
+        HttpResponse<String> third = webClient.send(postMessageRequest("third"), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(429, third.statusCode());
+
+        releaseWriter.countDown();
+        Assert.assertEquals(200, first.join().statusCode());
+        Assert.assertEquals(200, second.join().statusCode());
+    }
+
+    private void startApp(SocialMediaController controller) throws InterruptedException {
+        socialMediaController = controller;
+        app = socialMediaController.startAPI();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    /**
+     * @return a MessageDAO whose batch inserts, which the ingestion queue writes with, wait for releaseWriter.
+     */
+    private MessageStore blockingMessageStore() {
+        MessageStore messageDAO = new MessageDAO();
+        return (MessageStore) Proxy.newProxyInstance(MessageStore.class.getClassLoader(),
+                new Class<?>[] {MessageStore.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("insertMessages")) {
+                        writerBlocked.countDown();
+                        releaseWriter.await();
+                    }
+                    try {
+                        return method.invoke(messageDAO, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private HttpRequest postMessageRequest(String messageText) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + messageText + "\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import DAO.MessageStore;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class BulkheadTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+    /**
+     * Holds back message inserts until it is counted down.
+     */
+    CountDownLatch releaseInsert = new CountDownLatch(1);
+    /**
+     * Counted down once a message insert is held back.
+     */
+    CountDownLatch insertBlocked = new CountDownLatch(1);
+
+    /**
+     * Before every test, reset the database, shrink the bulkhead of the write routes to one request at a time with
+     * no queue, restart the Javalin app on a message store whose inserts can be held back, and create a new
+     * webClient for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        System.setProperty("socialmedia.bulkhead.writes.maxConcurrent", "1");
+        System.setProperty("socialmedia.bulkhead.writes.maxQueued", "0");
+        socialMediaController = new SocialMediaController(blockingMessageStore(), new AccountDAO());
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        releaseInsert.countDown();
+        app.stop();
+        System.clearProperty("socialmedia.bulkhead.writes.maxConcurrent");
+        System.clearProperty("socialmedia.bulkhead.writes.maxQueued");
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages while another POST holds the only permit of the write
+     * routes, then reading messages and logging in
+     *
+     * Expected Response:
+     *  Status Code: 503 with a Retry-After header for the second POST, 200 for the reads and the login, which are
+     *  in other route groups, and 200 for the first POST once its insert is released
+     */
+    @Test
+    public void saturatedWritesRejectedOtherGroupsServed() throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<String>> first = webClient.sendAsync(postRequest("/messages",
+                "{\"posted_by\":1, \"message_text\": \"first\", \"time_posted_epoch\": 1669947792}"),
+                HttpResponse.BodyHandlers.ofString());
+        Assert.assertTrue(insertBlocked.await(5, TimeUnit.SECONDS));
+
+        HttpResponse<String> second = webClient.send(postRequest("/messages",
+                "{\"posted_by\":1, \"message_text\": \"second\", \"time_posted_epoch\": 1669947792}"),
+                HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(503, second.statusCode());
+        Assert.assertEquals("1", second.headers().firstValue("Retry-After").orElse(null));
+
+        Assert.assertEquals(200, get("/messages").statusCode());
+        Assert.assertEquals(200, get("/messages/1").statusCode());
+        Assert.assertEquals(200, webClient.send(postRequest("/login",
+                "{\"username\": \"testuser1\", \"password\": \"password\"}"),
+                HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        releaseInsert.countDown();
+        Assert.assertEquals(200, first.join().statusCode());
+    }
+
+    /**
+     * @return a MessageDAO whose single inserts wait for releaseInsert.
+     */
+    private MessageStore blockingMessageStore() {
+        MessageStore messageDAO = new MessageDAO();
+        return (MessageStore) Proxy.newProxyInstance(MessageStore.class.getClassLoader(),
+                new Class<?>[] {MessageStore.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("insertMessage")) {
+                        insertBlocked.countDown();
+                        releaseInsert.await();
+                    }
+                    try {
+                        return method.invoke(messageDAO, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest postRequest(String path, String body) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.StorageBackend;
+import Model.Account;
+import Model.Message;
+import io.javalin.Javalin;
+
+public class InMemoryBackendTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, restart the Javalin app on the in-memory storage backend, and create a new webClient and
+     * ObjectMapper for interacting locally on the web. The in-memory stores are shared by the whole JVM, so each test
+     * registers its own account.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        socialMediaController = new SocialMediaController(StorageBackend.MEMORY);
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Registering, logging in, posting a message, patching it and reading it back on the in-memory backend, then
+     * posting for an account that does not exist
+     *
+     * Expected Response:
+     *  Status Code: 200 for every step but the last, which gets 400
+     *  Response Body: the same JSON as the database backend would give
+     */
+    @Test
+    public void registerLoginAndPostInMemory() throws IOException, InterruptedException {
+        HttpResponse<String> registered = post("/register", "{\"username\": \"memoryuser\", \"password\": \"password\"}");
+        Assert.assertEquals(200, registered.statusCode());
+        Account account = objectMapper.readValue(registered.body(), Account.class);
+        Assert.assertEquals(400, post("/register", "{\"username\": \"memoryuser\", \"password\": \"password\"}").statusCode());
+        Assert.assertEquals(200, post("/login", "{\"username\": \"memoryuser\", \"password\": \"password\"}").statusCode());
+        Assert.assertEquals(401, post("/login", "{\"username\": \"memoryuser\", \"password\": \"wrongpass\"}").statusCode());
+
+        HttpResponse<String> posted = post("/messages", "{\"posted_by\": " + account.getAccount_id()
+                + ", \"message_text\": \"in memory\", \"time_posted_epoch\": 1669947792}");
+        Assert.assertEquals(200, posted.statusCode());
+        Message message = objectMapper.readValue(posted.body(), Message.class);
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + message.getMessage_id()))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"patched in memory\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/" + account.getAccount_id() + "/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(getRequest, HttpResponse.BodyHandlers.ofString());
+        List<Message> messages = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(List.of(new Message(message.getMessage_id(), account.getAccount_id(),
+                "patched in memory", 1669947792)), messages);
+
+        Assert.assertEquals(400, post("/messages", "{\"posted_by\": " + (account.getAccount_id() + 1000)
+                + ", \"message_text\": \"nobody\", \"time_posted_epoch\": 1669947792}").statusCode());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
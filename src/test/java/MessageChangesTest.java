@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessageChange;
+import Model.MessageChanges;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MessageChangesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/changes?since_version={version} after a message is
+     * posted, another patched, and the posted one deleted
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the patch and the deletion; the posted message is gone, so its
+     *  creation is left out
+     */
+    @Test
+    public void getChangesSinceVersion() throws IOException, InterruptedException {
+        long version = getChanges("").version;
+
+        postMessage("short-lived message");
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .DELETE()
+                .build();
+        Assert.assertEquals(200, webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        List<MessageChange> expectedChanges = new ArrayList<>();
+        expectedChanges.add(new MessageChange(version + 2, MessageChange.UPDATED, 1,
+                new Message(1, 1, "updated message", 1669947792)));
+        expectedChanges.add(new MessageChange(version + 3, MessageChange.DELETED, 2, null));
+        Assert.assertEquals(new MessageChanges(expectedChanges, version + 3, false),
+                getChanges("?since_version=" + version));
+        Assert.assertEquals(new MessageChanges(new ArrayList<>(), version + 3, false),
+                getChanges("?since_version=" + (version + 3)));
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/changes with a limit, following the returned version
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the changes, limit at a time, with has_more set until the last of them
+     */
+    @Test
+    public void getChangesInPages() throws IOException, InterruptedException {
+        long version = getChanges("").version;
+        postMessage("message 2");
+        postMessage("message 3");
+        postMessage("message 4");
+
+        MessageChanges first = getChanges("?since_version=" + version + "&limit=2");
+        Assert.assertEquals(2, first.changes.size());
+        Assert.assertTrue(first.has_more);
+        Assert.assertEquals(version + 2, first.version);
+
+        MessageChanges second = getChanges("?since_version=" + first.version + "&limit=2");
+        Assert.assertEquals(1, second.changes.size());
+        Assert.assertFalse(second.has_more);
+        Assert.assertEquals(new Message(4, 1, "message 4", 1669947792), second.changes.get(0).message);
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/changes with a version that was never handed out, and
+     * with one that is not a number
+     *
+     * Expected Response:
+     *  Status Code: 410, then 400
+     */
+    @Test
+    public void getChangesUnknownVersion() throws IOException, InterruptedException {
+        Assert.assertEquals(410, send("?since_version=" + Long.MAX_VALUE).statusCode());
+        Assert.assertEquals(400, send("?since_version=abc").statusCode());
+    }
+
+    private MessageChanges getChanges(String query) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(query);
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), MessageChanges.class);
+    }
+
+    private HttpResponse<String> send(String query) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/changes" + query))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void postMessage(String text) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+}
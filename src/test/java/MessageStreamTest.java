@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MessageStreamTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Subscribing to GET localhost:8080/messages/stream?account_id=1, then posting and patching a message
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a "created" event then an "updated" event, each with the JSON representation of the message
+     */
+    @Test(timeout = 20000)
+    public void streamReceivesChanges() throws IOException, InterruptedException {
+        HttpResponse<Stream<String>> stream = subscribe("?account_id=1", null);
+        Assert.assertEquals(200, stream.statusCode());
+        Iterator<String> lines = stream.body().iterator();
+
+        postMessage("streamed message");
+        Event created = nextEvent(lines);
+        Assert.assertEquals("created", created.name);
+        Assert.assertEquals(new Message(2, 1, "streamed message", 1669947792),
+                objectMapper.readValue(created.data, Message.class));
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"patched message\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Event updated = nextEvent(lines);
+        Assert.assertEquals("updated", updated.name);
+        Assert.assertEquals(new Message(2, 1, "patched message", 1669947792),
+                objectMapper.readValue(updated.data, Message.class));
+        stream.body().close();
+    }
+
+    /**
+     * Reconnecting to GET localhost:8080/messages/stream with the Last-Event-ID of the last event seen, after a
+     * message was posted while disconnected
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the "created" event of the message posted while disconnected
+     */
+    @Test(timeout = 20000)
+    public void streamResumesFromLastEventId() throws IOException, InterruptedException {
+        HttpResponse<Stream<String>> stream = subscribe("", null);
+        Iterator<String> lines = stream.body().iterator();
+        postMessage("first message");
+        Event first = nextEvent(lines);
+        stream.body().close();
+
+        postMessage("missed message");
+        HttpResponse<Stream<String>> resumed = subscribe("", first.id);
+        Event missed = nextEvent(resumed.body().iterator());
+        Assert.assertEquals("created", missed.name);
+        Assert.assertEquals("missed message", objectMapper.readValue(missed.data, Message.class).getMessage_text());
+        resumed.body().close();
+
+        HttpResponse<Stream<String>> reset = subscribe("", "unknown-1");
+        Assert.assertEquals("reset", nextEvent(reset.body().iterator()).name);
+        reset.body().close();
+    }
+
+    /**
+     * Subscribing to GET localhost:8080/messages/stream?account_id=abc
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void streamInvalidAccountId() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/stream?account_id=abc"))
+                .build();
+        Assert.assertEquals(400, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private HttpResponse<Stream<String>> subscribe(String query, String lastEventId) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/stream" + query))
+                .header("Accept", "text/event-stream");
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofLines());
+    }
+
+    private void postMessage(String text) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * Read lines up to the end of the next event, skipping comments.
+     */
+    private static Event nextEvent(Iterator<String> lines) {
+        Event event = new Event();
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (line.isEmpty() && event.name != null) {
+                return event;
+            } else if (line.startsWith("event: ")) {
+                event.name = line.substring("event: ".length());
+            } else if (line.startsWith("data: ")) {
+                event.data = line.substring("data: ".length());
+            } else if (line.startsWith("id: ")) {
+                event.id = line.substring("id: ".length());
+            }
+        }
+        return event;
+    }
+
+    private static class Event {
+        String name;
+        String data;
+        String id;
+    }
+}
@@ -0,0 +1,72 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Util.ConnectionUtil;
+
+/**
+ * Guards the indexes added by the migrations: every hot DAO query is run through EXPLAIN and must be answered from
+ * an index rather than a full table scan. If a query or an index is changed so that H2 falls back to scanning the
+ * table, this test fails the build.
+ */
+public class QueryPlanTest {
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    @Test
+    public void findMessageUsesPrimaryKey() throws SQLException {
+        assertUsesIndex(MessageDAO.FIND_MESSAGE_SQL, 1);
+    }
+
+    @Test
+    public void messagesAfterUsesPrimaryKey() throws SQLException {
+        assertUsesIndex(MessageDAO.MESSAGES_AFTER_SQL, 1, 100);
+    }
+
+    @Test
+    public void findUserMessagesUsesPostedByIndex() throws SQLException {
+        assertUsesIndex(MessageDAO.USER_MESSAGES_SQL, 1);
+    }
+
+    @Test
+    public void userMessagesAfterUsesPostedByIndex() throws SQLException {
+        assertUsesIndex(MessageDAO.USER_MESSAGES_AFTER_SQL, 1, 1, 100);
+    }
+
+    @Test
+    public void streamUserMessagesUsesPostedByIndex() throws SQLException {
+        assertUsesIndex(MessageDAO.STREAM_USER_MESSAGES_SQL, 1);
+    }
+
+    @Test
+    public void findAccountUsesUsernameIndex() throws SQLException {
+        assertUsesIndex(AccountDAO.FIND_ACCOUNT_SQL, "testuser1", "password");
+    }
+
+    /**
+     * Run the query through EXPLAIN with the given parameters and check that the plan does not scan the table.
+     */
+    private void assertUsesIndex(String sql, Object... parameters) throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                explain.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet rs = explain.executeQuery()) {
+                Assert.assertTrue(rs.next());
+                String plan = rs.getString(1);
+                Assert.assertFalse("Query falls back to a table scan: " + plan, plan.contains(".tableScan"));
+            }
+        }
+    }
+}
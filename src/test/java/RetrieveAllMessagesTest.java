@@ -98,6 +98,46 @@ public class RetrieveAllMessagesTest {
     }
 
 
+    /**
+     * Sending an http request to GET localhost:8080/messages with the ETag of an earlier response, before and after
+     * a new message is posted
+     * 
+     * Expected Response:
+     *  Status Code: 304 with no body while nothing changed, then 200 with the new message
+     */
+    @Test
+    public void getAllMessagesConditional() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+
+        HttpRequest conditionalRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("If-None-Match", etag)
+                .build();
+        HttpResponse<String> notModified = webClient.send(conditionalRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(304, notModified.statusCode());
+        Assert.assertTrue(notModified.body().isEmpty());
+
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> modified = webClient.send(conditionalRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, modified.statusCode());
+        Assert.assertNotEquals(etag, modified.headers().firstValue("ETag").orElseThrow());
+        List<Message> messages = objectMapper.readValue(modified.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(2, messages.size());
+    }
 
     private void removeInitialMessage(){
         try {
@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessagePage;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagesPageTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add a few more messages, restart the Javalin app, and create a new
+     * webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        insertMessages();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=2, then following the cursor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of a page of two messages with a cursor, then the last message with none
+     */
+    @Test
+    public void getMessagesPageFollowsCursor() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("http://localhost:8080/messages?limit=2");
+        Assert.assertEquals(200, response.statusCode());
+
+        List<Message> expectedMessages = new ArrayList<>();
+        expectedMessages.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedMessages.add(new Message(2, 1, "test message 2", 1669947793));
+        MessagePage expectedResult = new MessagePage(expectedMessages, 2);
+        Assert.assertEquals(expectedResult, objectMapper.readValue(response.body(), MessagePage.class));
+
+        response = get("http://localhost:8080/messages?after_id=2&limit=2");
+        Assert.assertEquals(200, response.statusCode());
+
+        expectedMessages = new ArrayList<>();
+        expectedMessages.add(new Message(3, 2, "test message 3", 1669947794));
+        expectedResult = new MessagePage(expectedMessages, null);
+        Assert.assertEquals(expectedResult, objectMapper.readValue(response.body(), MessagePage.class));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?after_id=1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of a page with the user's messages after message 1
+     */
+    @Test
+    public void getUserMessagesPageAfterCursor() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("http://localhost:8080/accounts/1/messages?after_id=1");
+        Assert.assertEquals(200, response.statusCode());
+
+        List<Message> expectedMessages = new ArrayList<>();
+        expectedMessages.add(new Message(2, 1, "test message 2", 1669947793));
+        MessagePage expectedResult = new MessagePage(expectedMessages, null);
+        Assert.assertEquals(expectedResult, objectMapper.readValue(response.body(), MessagePage.class));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?after_id=abc
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesPageInvalidCursor() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("http://localhost:8080/messages?after_id=abc");
+        Assert.assertEquals(400, response.statusCode());
+    }
+
+    private HttpResponse<String> get(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void insertMessages(){
+        try (Connection conn = ConnectionUtil.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement("insert into account (username, password) values ('testuser2', 'password')")) {
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement("insert into message (posted_by, message_text, time_posted_epoch) values (?, ?, ?)")) {
+                ps.setInt(1, 1);
+                ps.setString(2, "test message 2");
+                ps.setLong(3, 1669947793);
+                ps.executeUpdate();
+                ps.setInt(1, 2);
+                ps.setString(2, "test message 3");
+                ps.setLong(3, 1669947794);
+                ps.executeUpdate();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class SearchMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add a few more messages, restart the Javalin app, and create a new
+     * webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        insertMessages();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search?q=message test
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of every message containing both words, highest message_id first
+     */
+    @Test
+    public void searchAllTerms() throws IOException, InterruptedException {
+        HttpResponse<String> response = search("message test");
+        Assert.assertEquals(200, response.statusCode());
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(3, 1, "Another test message about cats", 1669947794));
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        Assert.assertEquals(expectedResult, readMessages(response));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search with OR and a prefix term, and with a limit
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the matching messages, highest message_id first, cut to the limit
+     */
+    @Test
+    public void searchAlternativesAndPrefix() throws IOException, InterruptedException {
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(3, 1, "Another test message about cats", 1669947794));
+        expectedResult.add(new Message(2, 1, "Hello, world!", 1669947793));
+        Assert.assertEquals(expectedResult, readMessages(search("hello OR cat*")));
+
+        expectedResult.remove(1);
+        Assert.assertEquals(expectedResult, readMessages(search("hello OR cat*", "&limit=1")));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search after a message is patched and another deleted
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the matches of the messages as they now are
+     */
+    @Test
+    public void searchAfterChanges() throws IOException, InterruptedException {
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"goodbye, cats\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/3"))
+                .DELETE()
+                .build();
+        Assert.assertEquals(200, webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        Assert.assertTrue(readMessages(search("hello")).isEmpty());
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(2, 1, "goodbye, cats", 1669947793));
+        Assert.assertEquals(expectedResult, readMessages(search("cats")));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search without search terms
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchWithoutTerms() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/search"))
+                .build();
+        Assert.assertEquals(400, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private HttpResponse<String> search(String query) throws IOException, InterruptedException {
+        return search(query, "");
+    }
+
+    private HttpResponse<String> search(String query, String extraParams) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/search?q="
+                        + URLEncoder.encode(query, StandardCharsets.UTF_8) + extraParams))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<Message> readMessages(HttpResponse<String> response) throws IOException {
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+    }
+
+    private void insertMessages(){
+        try (Connection conn = ConnectionUtil.getConnection();
+                PreparedStatement ps = conn.prepareStatement("insert into message (posted_by, message_text, time_posted_epoch) values (?, ?, ?)")) {
+            ps.setInt(1, 1);
+            ps.setString(2, "Hello, world!");
+            ps.setLong(3, 1669947793);
+            ps.executeUpdate();
+            ps.setInt(1, 1);
+            ps.setString(2, "Another test message about cats");
+            ps.setLong(3, 1669947794);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class TimelineCacheTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, cut timelines to two messages, restart the Javalin app, and create a
+     * new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        System.setProperty("socialmedia.cache.timeline.maxPerAccount", "2");
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty("socialmedia.cache.timeline.maxPerAccount");
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages twice, for a user with more messages than a
+     * timeline holds, then again after posting another message
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of every message of the user in message_id order, each time
+     */
+    @Test
+    public void getUserMessagesLongerThanTimeline() throws IOException, InterruptedException {
+        postMessage("second message");
+        postMessage("third message");
+        List<Message> expected = List.of(
+                new Message(1, 1, "test message 1", 1669947792),
+                new Message(2, 1, "second message", 1669947792),
+                new Message(3, 1, "third message", 1669947792));
+        Assert.assertEquals(expected, getUserMessages());
+        Assert.assertEquals(expected, getUserMessages());
+
+        postMessage("fourth message");
+        List<Message> messages = getUserMessages();
+        Assert.assertEquals(4, messages.size());
+        Assert.assertEquals(expected, messages.subList(0, 3));
+        Assert.assertEquals("fourth message", messages.get(3).getMessage_text());
+    }
+
+    private List<Message> getUserMessages() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+    }
+
+    private void postMessage(String text) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+}
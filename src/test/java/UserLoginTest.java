@@ -119,4 +119,39 @@ public class UserLoginTest {
         Assert.assertEquals("", response.body().toString());
 
     }
+
+    /**
+     * Sending an http request to POST localhost:8080/register with a new username, then to POST
+     * localhost:8080/login with the same username and password
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the newly registered user object
+     */
+    @Test
+    public void loginAfterRegistration() throws IOException, InterruptedException {
+        String credentials = "{" +
+                "\"username\": \"testuser2\", " +
+                "\"password\": \"password\" }";
+        HttpRequest registerRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(registerRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+
+        Assert.assertEquals(200, status);
+        ObjectMapper om = new ObjectMapper();
+        Account expectedResult = new Account(2, "testuser2", "password");
+        Account actualResult = om.readValue(response.body().toString(), Account.class);
+        Assert.assertEquals(expectedResult, actualResult);
+    }
 }